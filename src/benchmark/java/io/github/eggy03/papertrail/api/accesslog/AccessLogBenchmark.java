@@ -0,0 +1,140 @@
+package io.github.eggy03.papertrail.api.accesslog;
+
+import io.github.eggy03.papertrail.api.configuration.AccessLogConfig;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/*
+Per-request cost of the access log on the request thread, before and after it moved to AccessLogWriter.
+
+- httpLoggingFilter: what the removed HttpLoggingFilter did in its response filter, a synchronous log.info
+  with the colored method, formatted and handled on the request thread
+- accessLogFilter: what AccessLogFilter does, the sampling decision and, for a logged request,
+  an AccessLogEntry handed to the running writer
+
+Both log through the same handler, a StreamHandler writing to a null stream, so the comparison leaves out
+the console I/O that HttpLoggingFilter also did on the request thread. Resolving the path from the UriInfo
+is left out on both sides, it needs the REST runtime. Lines the writer dropped because it fell behind are
+printed after each trial, a dropped line costs the request thread less than a queued one.
+
+Run with ./mvnw -Pbenchmark test-compile exec:exec
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.logging.manager=org.jboss.logmanager.LogManager")
+@Threads(4)
+@State(Scope.Benchmark)
+public class AccessLogBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("io.github.eggy03.papertrail.api.configuration.HttpLoggingFilter");
+    private static final String PATH = "/api/v1/content/message/1302148573926148096";
+    private static final URI REQUEST_URI = URI.create("http://localhost:8080" + PATH);
+
+    @Param({"1.0", "0.1"})
+    double sampleRate;
+
+    SimpleMeterRegistry registry;
+    AccessLogWriter writer;
+    AccessLogFilter filter;
+
+    @Setup
+    public void startWriter() {
+
+        java.util.logging.Logger root = java.util.logging.Logger.getLogger("");
+        for (Handler handler : root.getHandlers())
+            root.removeHandler(handler);
+        root.addHandler(new StreamHandler(OutputStream.nullOutputStream(), new SimpleFormatter()));
+
+        AccessLogConfig config = new BenchmarkConfig(sampleRate);
+        registry = new SimpleMeterRegistry();
+        writer = new AccessLogWriter(config, registry);
+        filter = new AccessLogFilter(writer, config);
+        writer.onStart(null);
+    }
+
+    @TearDown
+    public void stopWriter() throws InterruptedException {
+        writer.onStop(null);
+        System.out.printf("%nAccess log lines dropped: %.0f%n", registry.get("papertrail.access_log.dropped").counter().count());
+    }
+
+    @Benchmark
+    public void httpLoggingFilter() {
+
+        long start = System.currentTimeMillis();
+        long elapsedTime = System.currentTimeMillis() - start;
+
+        log.info("{}{}{} {} -> {} ({} ms)",
+                AnsiColor.BLUE,
+                "GET",
+                AnsiColor.RESET,
+                REQUEST_URI.getPath(),
+                200,
+                elapsedTime);
+    }
+
+    @Benchmark
+    public void accessLogFilter() {
+
+        long startNanos = System.nanoTime();
+        long durationNanos = System.nanoTime() - startNanos;
+
+        if (filter.shouldLog(durationNanos, 200))
+            writer.append(new AccessLogEntry(System.currentTimeMillis(), "GET", PATH, 200, durationNanos));
+    }
+
+    // the prod settings, with the sample rate under test
+    private record BenchmarkConfig(double sampleRate) implements AccessLogConfig {
+
+        @Override
+        public boolean enabled() {
+            return true;
+        }
+
+        @Override
+        public Format format() {
+            return Format.JSON;
+        }
+
+        @Override
+        public Optional<Duration> slowThreshold() {
+            return Optional.of(Duration.ofMillis(500));
+        }
+
+        @Override
+        public int capacity() {
+            return 8192;
+        }
+
+        @Override
+        public int batchSize() {
+            return 256;
+        }
+    }
+}
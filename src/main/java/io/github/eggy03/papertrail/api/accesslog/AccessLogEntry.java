@@ -0,0 +1,10 @@
+package io.github.eggy03.papertrail.api.accesslog;
+
+/**
+ * One access log line, formatted by the writer thread and not by the request thread.
+ *
+ * @param timestamp      epoch millis of the response
+ * @param durationNanos  time from the request filter to the response filter, measured with {@link System#nanoTime()}
+ */
+public record AccessLogEntry(long timestamp, String method, String path, int status, long durationNanos) {
+}
@@ -0,0 +1,71 @@
+package io.github.eggy03.papertrail.api.accesslog;
+
+import io.github.eggy03.papertrail.api.configuration.AccessLogConfig;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Measures every request with System.nanoTime, which unlike currentTimeMillis can not jump with the wall clock,
+and decides whether it gets logged:
+- server errors (5xx) and requests slower than access-log.slow-threshold always
+- the rest with a probability of access-log.sample-rate
+
+Only requests that are logged resolve their path and create an entry, formatting happens on the writer thread.
+*/
+@Provider
+public class AccessLogFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_NANOS = "papertrail.access-log.start";
+
+    private final AccessLogWriter writer;
+    private final boolean enabled;
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    public AccessLogFilter(AccessLogWriter writer, AccessLogConfig config) {
+        this.writer = writer;
+        this.enabled = config.enabled();
+        this.sampleRate = config.sampleRate();
+        this.slowThresholdNanos = config.slowThreshold().map(Duration::toNanos).orElse(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (enabled)
+            requestContext.setProperty(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+
+        if (!(requestContext.getProperty(START_NANOS) instanceof Long startNanos))
+            return;
+
+        long durationNanos = System.nanoTime() - startNanos;
+        int status = responseContext.getStatus();
+        if (!shouldLog(durationNanos, status))
+            return;
+
+        writer.append(new AccessLogEntry(
+                System.currentTimeMillis(),
+                requestContext.getMethod(),
+                requestContext.getUriInfo().getPath(),
+                status,
+                durationNanos
+        ));
+    }
+
+    // package-private for AccessLogBenchmark
+    boolean shouldLog(long durationNanos, int status) {
+        return status >= 500
+                || durationNanos >= slowThresholdNanos
+                || sampleRate >= 1.0
+                || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.eggy03.papertrail.api.accesslog;
+
+import io.github.eggy03.papertrail.api.configuration.AccessLogConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+Writes the access log off the request threads.
+
+AccessLogFilter only measures the request and hands an AccessLogEntry to append, which never blocks:
+when access-log.capacity lines are already waiting, the line is dropped and counted in papertrail.access_log.dropped.
+A single background writer takes the lines out in batches of up to access-log.batch-size, formats them
+into a reused StringBuilder and logs them to the papertrail.access category.
+
+Developer Notes
+
+Lines still waiting on shutdown are written before the writer stops.
+*/
+@ApplicationScoped
+@Slf4j
+public class AccessLogWriter {
+
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("papertrail.access");
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final AccessLogConfig config;
+    private final BlockingQueue<AccessLogEntry> queue;
+    private final Counter droppedCounter;
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public AccessLogWriter(AccessLogConfig config, MeterRegistry registry) {
+
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(config.capacity());
+        this.droppedCounter = Counter.builder("papertrail.access_log.dropped")
+                .description("Access log lines dropped because the writer fell behind")
+                .register(registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (config.enabled())
+            writer = Thread.ofVirtual().name("access-log-writer").start(this::writeLoop);
+    }
+
+    void onStop(@Observes ShutdownEvent event) throws InterruptedException {
+
+        running = false;
+        if (writer != null)
+            writer.join(SHUTDOWN_TIMEOUT);
+    }
+
+    public void append(AccessLogEntry entry) {
+        if (!queue.offer(entry))
+            droppedCounter.increment();
+    }
+
+    private void writeLoop() {
+
+        List<AccessLogEntry> batch = new ArrayList<>(config.batchSize());
+        StringBuilder line = new StringBuilder(256);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                AccessLogEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                batch.add(first);
+                queue.drainTo(batch, config.batchSize() - 1);
+                write(batch, line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Access log writer failed to write {} lines", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<AccessLogEntry> batch, StringBuilder line) {
+
+        if (!ACCESS_LOG.isInfoEnabled())
+            return;
+
+        for (AccessLogEntry entry : batch) {
+            line.setLength(0);
+            switch (config.format()) {
+                case TEXT -> AccessLogFormatter.appendText(line, entry);
+                case JSON -> AccessLogFormatter.appendJson(line, entry);
+            }
+            ACCESS_LOG.info(line.toString());
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package io.github.eggy03.papertrail.api.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import io.micrometer.core.instrument.Counter;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.codecs.Codec;
+import io.quarkus.redis.datasource.value.ValueCommands;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/*
+Two-tier cache: a bounded Caffeine cache per node in front of a Redis cache shared by all nodes.
+
+Reads go local -> Redis -> loader, filling the tiers on the way back.
+Writes (put/invalidate) update Redis first, then this node's local tier, and finally tell the other nodes
+over Redis pub/sub to drop their local copy, so that their next read picks the new value up from Redis.
+
+Keys the loader found nothing for can be remembered as absent in the local tier for a short time
+(near-cache.caches.*.negative-ttl), so repeated lookups of unknown keys don't reach Redis or the DB.
+A put or invalidate of the key clears that on every node.
+
+Redis keeps a version next to every key, which each put and invalidate bumps before it writes or deletes the value.
+A load reads the version before calling the loader, and writes the loaded value back with a script that only
+runs SET NX if the version is still the same. So a load can neither overwrite a newer value nor bring back
+a value that was invalidated while it ran, no matter which node wrote. The result of such a load is returned
+but not cached.
+
+The local tier is guarded the same way, by versions this node keeps per key stripe (LOCAL_VERSION_STRIPES).
+Every put and eviction of a key, including those announced by other nodes, bumps the version of its stripe.
+A load fills the local tier, or marks the key absent, only if the version of the key's stripe is still the one
+read before the load. The check runs inside the cache's compute for the key, which an eviction of the same key
+waits for, so an eviction either makes the check fail or removes the value right after.
+
+A loader can mark its result as possibly outdated by up to some duration (a row read from the read replica).
+Such a result only fills the local tier, for at most that duration, and is neither written to Redis nor
+remembered as absent, since other nodes and later loads must not pick it up.
+
+Caches with near-cache.caches.*.max-key-age cap the TTLs of both tiers so that no entry outlives the point
+where its key, a Snowflake, reaches that age. Message caches use the retention max-age, so that dropped
+or deleted messages can not be served from the cache. Keys already that old are not cached at all.
+
+When called inside a transaction, writes are deferred until the transaction has committed.
+Otherwise a rolled back save would leave a message in the cache that was never persisted.
+It is also what makes the version check work: a load that read the old row started before the commit,
+so it also read the version before the bump.
+
+Developer Notes
+
+Redis being unavailable is not fatal: reads fall through to the loader and writes only update the local tier.
+Pub/sub is fire-and-forget, so an invalidation missed during a Redis reconnect leaves a stale local entry
+on the other nodes until it expires. Keep the local TTL short for that reason.
+Versions expire VERSION_TTL after the last write of their key, a load that takes longer than that is not protected.
+The scripts touch a key and its version together, which needs a single Redis node (or hash tags on a cluster).
+*/
+@Slf4j
+public class NearCache<V> {
+
+    // keys per Redis MGET and per loader call in getAll
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    private static final Duration VERSION_TTL = Duration.ofMinutes(5);
+    private static final int LOCAL_VERSION_STRIPES = 4096; // a power of two
+    private static final String VERSION_SUFFIX = ":version";
+
+    // KEYS: value, version. ARGV: value, TTL of the value, TTL of the version
+    private static final String PUT_SCRIPT = """
+            redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[3])
+            return redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+            """;
+
+    // KEYS: value and version pairs. ARGV: TTL of the versions
+    private static final String INVALIDATE_SCRIPT = """
+            for i = 1, #KEYS, 2 do
+                redis.call('INCR', KEYS[i + 1])
+                redis.call('EXPIRE', KEYS[i + 1], ARGV[1])
+                redis.call('DEL', KEYS[i])
+            end
+            return 1
+            """;
+
+    // KEYS: value, version. ARGV: version read before the load ('' if there was none), value, TTL of the value
+    // 0 if the key was written since the version was read, 1 if filled, 2 if another load filled it first
+    private static final String FILL_SCRIPT = """
+            if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then
+                return 0
+            end
+            if redis.call('SET', KEYS[1], ARGV[2], 'NX', 'EX', ARGV[3]) then
+                return 1
+            end
+            return 2
+            """;
+
+    @Getter
+    private final String name;
+    private final Cache<Long, V> local; // null when the local tier is disabled
+    private final Duration localTtl;
+    private final Cache<Long, Boolean> absent; // null when negative caching or the local tier is disabled
+    private final ValueCommands<String, V> remote;
+    private final RedisDataSource redis; // for the scripts
+    private final Codec codec; // encodes values for the scripts the same way remote does
+    private final Duration remoteTtl;
+    private final Duration maxKeyAge; // null if entries don't expire by the age of their key
+    private final NearCacheManager manager;
+    private final TransactionSynchronizationRegistry transactions;
+
+    private final Counter localHits;
+    private final Counter negativeHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+
+    // bumped by every put or eviction of a key in the stripe, on this node
+    private final AtomicLongArray localVersions = new AtomicLongArray(LOCAL_VERSION_STRIPES);
+
+    NearCache(String name, Cache<Long, V> local, Duration localTtl, Cache<Long, Boolean> absent, ValueCommands<String, V> remote,
+              RedisDataSource redis, Codec codec, Duration remoteTtl, Duration maxKeyAge, NearCacheManager manager,
+              TransactionSynchronizationRegistry transactions,
+              Counter localHits, Counter negativeHits, Counter remoteHits, Counter misses) {
+
+        this.name = name;
+        this.local = local;
+        this.localTtl = localTtl;
+        this.absent = absent;
+        this.remote = remote;
+        this.redis = redis;
+        this.codec = codec;
+        this.remoteTtl = remoteTtl;
+        this.maxKeyAge = maxKeyAge;
+        this.manager = manager;
+        this.transactions = transactions;
+        this.localHits = localHits;
+        this.negativeHits = negativeHits;
+        this.remoteHits = remoteHits;
+        this.misses = misses;
+    }
+
+    /**
+     * A value returned by the loader of {@link #getOrLoad}.
+     *
+     * @param staleFor null if the value is current. Otherwise how far it may be behind, such as a row read from
+     *                 a lagging replica: it then only fills the local tier, for at most that long
+     */
+    public record Loaded<V>(V value, Duration staleFor) {
+    }
+
+    /**
+     * Returns the cached value for the key, or loads, caches and returns it.
+     * A null from the loader is returned as is, and remembered as absent if negative caching is enabled.
+     */
+    public V get(@NonNull Long key, @NonNull Function<Long, V> loader) {
+        return getOrLoad(key, id -> new Loaded<>(loader.apply(id), null));
+    }
+
+    /**
+     * Like {@link #get}, for loaders whose result is not always current, such as rows read from a lagging replica.
+     * A possibly outdated result is not shared through Redis, not remembered as absent, and kept in the local tier
+     * no longer than it may be behind, so it is never served older than it already was when loaded.
+     */
+    public V getOrLoad(@NonNull Long key, @NonNull Function<Long, Loaded<V>> loader) {
+
+        if (local != null) {
+            V value = local.getIfPresent(key);
+            if (value != null) {
+                localHits.increment();
+                return value;
+            }
+        }
+
+        if (absent != null && absent.getIfPresent(key) != null) {
+            negativeHits.increment();
+            return null;
+        }
+
+        long localVersion = localVersion(key);
+
+        V value = getRemote(key);
+        if (value != null) {
+            remoteHits.increment();
+            fillLocal(key, value, localVersion);
+            return value;
+        }
+
+        misses.increment();
+        String loadVersion = getRemoteVersion(key);
+        Loaded<V> loaded = loader.apply(key);
+        value = loaded.value();
+
+        if (loaded.staleFor() != null) {
+            if (value != null)
+                fillLocal(key, value, localVersion, loaded.staleFor());
+            return value;
+        }
+
+        if (value != null && loadVersion != null && !fillRemote(key, loadVersion, value))
+            return value; // raced a write on some node, don't cache a possibly outdated result
+
+        if (value != null) {
+            fillLocal(key, value, localVersion);
+        } else {
+            fillAbsent(key, localVersion);
+        }
+        return value;
+    }
+
+    /**
+     * Bulk version of {@link #get}. Keys that are neither cached nor found by the loader are left out of the result.
+     * <p>
+     * Keys missing locally are fetched from Redis with MGET, and the rest is handed to the loader,
+     * both in chunks of {@value #BULK_CHUNK_SIZE} keys.
+     * Loaded values only fill the local tier: writing thousands of entries to Redis one by one would cost
+     * more than the single query the next bulk lookup needs to load them again.
+     */
+    public Map<Long, V> getAll(@NonNull Collection<Long> keys, @NonNull Function<Set<Long>, Map<Long, V>> loader) {
+
+        Map<Long, V> found = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+
+        for (Long key : keys) {
+            V value = local != null ? local.getIfPresent(key) : null;
+            if (value != null) {
+                localHits.increment();
+                found.put(key, value);
+            } else if (absent != null && absent.getIfPresent(key) != null) {
+                negativeHits.increment();
+            } else {
+                missing.add(key);
+            }
+        }
+
+        if (missing.isEmpty())
+            return found;
+
+        Map<Long, Long> versions = new HashMap<>();
+        for (Long key : missing)
+            versions.put(key, localVersion(key));
+
+        Map<Long, V> fetched = new HashMap<>();
+        for (List<Long> chunk : chunks(missing))
+            fetched.putAll(getAllRemote(chunk));
+        remoteHits.increment(fetched.size());
+        missing.removeAll(fetched.keySet());
+
+        Map<Long, V> loaded = new HashMap<>();
+        for (List<Long> chunk : chunks(missing))
+            loaded.putAll(loader.apply(new LinkedHashSet<>(chunk)));
+        misses.increment(missing.size());
+
+        // guarded per key, see getOrLoad
+        fetched.forEach((key, value) -> fillLocal(key, value, versions.get(key)));
+        loaded.forEach((key, value) -> fillLocal(key, value, versions.get(key)));
+        missing.stream()
+                .filter(key -> !loaded.containsKey(key))
+                .forEach(key -> fillAbsent(key, versions.get(key)));
+
+        found.putAll(fetched);
+        found.putAll(loaded);
+        return found;
+    }
+
+    /**
+     * Writes the value through both tiers and evicts it from the local tier of the other nodes.
+     * Deferred until commit when called inside a transaction.
+     */
+    public void put(@NonNull Long key, @NonNull V value) {
+        afterCommit(() -> {
+            bumpLocalVersion(key);
+            setRemote(key, value);
+            putLocal(key, value);
+            if (absent != null)
+                absent.invalidate(key);
+            manager.publishInvalidation(name, List.of(key));
+        });
+    }
+
+    /**
+     * Removes the key from both tiers and from the local tier of the other nodes.
+     * Deferred until commit when called inside a transaction.
+     */
+    public void invalidate(@NonNull Long key) {
+        afterCommit(() -> {
+            deleteAllRemote(List.of(key));
+            evictLocal(key);
+            manager.publishInvalidation(name, List.of(key));
+        });
+    }
+
+    /**
+     * Bulk version of {@link #invalidate}, with one Redis script call and one invalidation message per
+     * {@value #BULK_CHUNK_SIZE} keys. Deferred until commit when called inside a transaction.
+     */
+    public void invalidateAll(@NonNull Collection<Long> keys) {
+
+        if (keys.isEmpty())
+            return;
+
+        List<List<Long>> chunks = chunks(keys);
+        afterCommit(() -> {
+            for (List<Long> chunk : chunks) {
+                deleteAllRemote(chunk);
+                chunk.forEach(this::evictLocal);
+                manager.publishInvalidation(name, chunk);
+            }
+        });
+    }
+
+    // empties the local tier of this node, leaving Redis and the other nodes alone. Only used by tests
+    void clearLocal() {
+        for (int i = 0; i < LOCAL_VERSION_STRIPES; i++)
+            localVersions.incrementAndGet(i); // a load running meanwhile must not fill the emptied tier
+        if (local != null)
+            local.invalidateAll();
+        if (absent != null)
+            absent.invalidateAll();
+    }
+
+    void evictLocal(Long key) {
+        bumpLocalVersion(key); // before removing, so that a load filling the key meanwhile either fails its check or is removed
+        if (local != null)
+            local.invalidate(key);
+        if (absent != null)
+            absent.invalidate(key);
+    }
+
+    private long localVersion(Long key) {
+        return localVersions.get(stripe(key));
+    }
+
+    private void bumpLocalVersion(Long key) {
+        localVersions.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(Long key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCAL_VERSION_STRIPES - 1);
+    }
+
+    // fills the local tier with a loaded value, unless the key was put or evicted on this node since localVersion was read
+    private void fillLocal(Long key, V value, long localVersion) {
+        if (local != null)
+            local.asMap().compute(key, (id, current) -> localVersion(id) == localVersion ? value : current);
+    }
+
+    // like fillLocal, but expires the value after ttl if that is shorter than the local TTL.
+    // A newer value kept by a failed version check gets the shorter TTL too, which only costs an earlier reload
+    private void fillLocal(Long key, V value, long localVersion, Duration ttl) {
+
+        Duration localTtl = ttl(key, ttl.compareTo(this.localTtl) < 0 ? ttl : this.localTtl, maxKeyAge);
+        if (local != null && localTtl.isPositive())
+            local.policy().expireVariably().orElseThrow().compute(key,
+                    (id, current) -> localVersion(id) == localVersion ? value : current, localTtl);
+    }
+
+    private void fillAbsent(Long key, long localVersion) {
+        if (absent != null)
+            absent.asMap().compute(key, (id, current) -> localVersion(id) == localVersion ? Boolean.TRUE : current);
+    }
+
+    private void putLocal(Long key, V value) {
+        if (local != null)
+            local.put(key, value);
+    }
+
+    private V getRemote(Long key) {
+        try {
+            return remote.get(remoteKey(key));
+        } catch (RuntimeException e) {
+            log.warn("Near cache {}: failed to read key {} from Redis, falling through to the loader", name, key, e);
+            return null;
+        }
+    }
+
+    private Map<Long, V> getAllRemote(List<Long> keys) {
+
+        Map<Long, V> values = new HashMap<>();
+        try {
+            Map<String, V> fetched = remote.mget(keys.stream().map(this::remoteKey).toArray(String[]::new));
+            for (Long key : keys) {
+                V value = fetched.get(remoteKey(key));
+                if (value != null)
+                    values.put(key, value);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Near cache {}: failed to read {} keys from Redis, falling through to the loader", name, keys.size(), e);
+        }
+        return values;
+    }
+
+    // null if Redis could not be read, the load then skips the remote tier
+    private String getRemoteVersion(Long key) {
+        try {
+            Response version = redis.execute("GET", versionKey(key));
+            return version == null ? "" : version.toString();
+        } catch (RuntimeException e) {
+            log.warn("Near cache {}: failed to read the version of key {} from Redis", name, key, e);
+            return null;
+        }
+    }
+
+    // false if the key was written or invalidated since loadVersion was read
+    private boolean fillRemote(Long key, String loadVersion, V value) {
+
+        long ttlSeconds = ttl(key, remoteTtl, maxKeyAge).toSeconds();
+        if (ttlSeconds <= 0)
+            return true; // too old to be cached, the local tier expires it right away too
+
+        try {
+            Response filled = redis.execute("EVAL", FILL_SCRIPT, "2", remoteKey(key), versionKey(key),
+                    loadVersion, encode(value), String.valueOf(ttlSeconds));
+            return filled == null || filled.toInteger() != 0;
+        } catch (RuntimeException e) {
+            log.warn("Near cache {}: failed to write key {} to Redis", name, key, e);
+            return true; // nothing was written, the local tier is still guarded
+        }
+    }
+
+    private void setRemote(Long key, V value) {
+
+        long ttlSeconds = ttl(key, remoteTtl, maxKeyAge).toSeconds();
+        if (ttlSeconds <= 0) {
+            deleteAllRemote(List.of(key)); // too old to be cached, but an older value must not stay behind
+            return;
+        }
+
+        try {
+            redis.execute("EVAL", PUT_SCRIPT, "2", remoteKey(key), versionKey(key),
+                    encode(value), String.valueOf(ttlSeconds), String.valueOf(VERSION_TTL.toSeconds()));
+        } catch (RuntimeException e) {
+            log.warn("Near cache {}: failed to write key {} to Redis", name, key, e);
+        }
+    }
+
+    private void deleteAllRemote(List<Long> keys) {
+
+        List<String> args = new ArrayList<>(keys.size() * 2 + 3);
+        args.add(INVALIDATE_SCRIPT);
+        args.add(String.valueOf(keys.size() * 2));
+        for (Long key : keys) {
+            args.add(remoteKey(key));
+            args.add(versionKey(key));
+        }
+        args.add(String.valueOf(VERSION_TTL.toSeconds()));
+
+        try {
+            redis.execute("EVAL", args.toArray(String[]::new));
+        } catch (RuntimeException e) {
+            log.warn("Near cache {}: failed to delete {} keys from Redis", name, keys.size(), e);
+        }
+    }
+
+    // the TTL of an entry, cut short to when the key reaches maxKeyAge (if set), never negative
+    static Duration ttl(Long key, Duration ttl, Duration maxKeyAge) {
+
+        if (maxKeyAge == null)
+            return ttl;
+
+        Duration left = Duration.between(Instant.now(), Snowflake.toInstant(key).plus(maxKeyAge));
+        if (left.isNegative())
+            return Duration.ZERO;
+        return left.compareTo(ttl) < 0 ? left : ttl;
+    }
+
+    private String encode(V value) {
+        return new String(codec.encode(value), StandardCharsets.UTF_8);
+    }
+
+    private String remoteKey(Long key) {
+        return NearCacheManager.KEY_PREFIX + name + ":" + key;
+    }
+
+    private String versionKey(Long key) {
+        return remoteKey(key) + VERSION_SUFFIX;
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> keys) {
+
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+        for (Long key : keys) {
+            chunk.add(key);
+            if (chunk.size() == BULK_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty())
+            chunks.add(chunk);
+        return chunks;
+    }
+
+    private void afterCommit(Runnable action) {
+
+        if (transactions.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            action.run();
+            return;
+        }
+
+        transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do before the commit
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED)
+                    action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.eggy03.papertrail.api.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.github.eggy03.papertrail.api.configuration.NearCacheConfig;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.codecs.Codecs;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+Creates the near caches and carries their invalidations between nodes.
+
+Every node subscribes to a single Redis pub/sub channel. An invalidation is published as "nodeId|cacheName|key1,key2,..."
+and each node evicts the keys from the local tier of the named cache, ignoring its own messages.
+*/
+@ApplicationScoped
+@Slf4j
+public class NearCacheManager {
+
+    static final String KEY_PREFIX = "papertrail:cache:";
+    static final String INVALIDATION_CHANNEL = "papertrail:near-cache:invalidation";
+
+    private final RedisDataSource redis;
+    private final NearCacheConfig config;
+    private final MeterRegistry registry;
+    private final TransactionSynchronizationRegistry transactions;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, NearCache<?>> caches = new ConcurrentHashMap<>();
+    private final PubSubCommands<String> pubSub;
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    public NearCacheManager(RedisDataSource redis, NearCacheConfig config, MeterRegistry registry, TransactionSynchronizationRegistry transactions) {
+        this.redis = redis;
+        this.config = config;
+        this.registry = registry;
+        this.transactions = transactions;
+        this.pubSub = redis.pubsub(String.class);
+    }
+
+    public <V> NearCache<V> create(@NonNull String name, @NonNull Class<V> type) {
+
+        NearCacheConfig.CacheSpec spec = config.caches().get(name);
+        boolean localEnabled = config.localEnabled();
+        Duration localTtl = spec.localTtl();
+        Duration maxKeyAge = spec.maxKeyAge().orElse(null);
+
+        NearCache<V> cache = new NearCache<>(
+                name,
+                localEnabled
+                        ? Caffeine.newBuilder().maximumSize(spec.maximumSize())
+                        .expireAfter(Expiry.<Long, V>writing((key, value) -> NearCache.ttl(key, localTtl, maxKeyAge)))
+                        .build()
+                        : null,
+                localTtl,
+                localEnabled && spec.negativeTtl().isPresent()
+                        ? Caffeine.newBuilder().maximumSize(spec.maximumSize()).expireAfterWrite(spec.negativeTtl().get()).build()
+                        : null,
+                redis.value(type),
+                redis,
+                Codecs.getDefaultCodecFor(type),
+                spec.remoteTtl(),
+                maxKeyAge,
+                this,
+                transactions,
+                counter(name, "local_hit"),
+                counter(name, "negative_hit"),
+                counter(name, "remote_hit"),
+                counter(name, "miss")
+        );
+
+        if (caches.putIfAbsent(name, cache) != null)
+            throw new IllegalStateException("Near cache " + name + " already exists");
+
+        return cache;
+    }
+
+    // empties the local tier of every cache on this node. Only used by tests, after they flushed Redis
+    void clearLocal() {
+        caches.values().forEach(NearCache::clearLocal);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        subscriber = pubSub.subscribe(INVALIDATION_CHANNEL, this::onInvalidation);
+        log.info("{}Near cache invalidations subscribed as node {}{}", AnsiColor.GREEN, nodeId, AnsiColor.RESET);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (subscriber != null)
+            subscriber.unsubscribe();
+    }
+
+    void publishInvalidation(String cacheName, Collection<Long> keys) {
+
+        String joinedKeys = keys.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            pubSub.publish(INVALIDATION_CHANNEL, nodeId + "|" + cacheName + "|" + joinedKeys);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish the invalidation of {} keys in near cache {}", keys.size(), cacheName, e);
+        }
+    }
+
+    private void onInvalidation(String message) {
+
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed near cache invalidation: {}", message);
+            return;
+        }
+
+        if (nodeId.equals(parts[0]))
+            return;
+
+        NearCache<?> cache = caches.get(parts[1]);
+        if (cache == null)
+            return;
+
+        try {
+            for (String key : parts[2].split(","))
+                cache.evictLocal(Long.valueOf(key));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed near cache invalidation: {}", message);
+        }
+    }
+
+    private Counter counter(String cacheName, String result) {
+        return Counter.builder("papertrail.cache.gets")
+                .description("Near cache reads by the tier that answered them")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(registry);
+    }
+}
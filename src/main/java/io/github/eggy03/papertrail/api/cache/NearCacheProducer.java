@@ -0,0 +1,45 @@
+package io.github.eggy03.papertrail.api.cache;
+
+import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.dto.GuildLogConfigurationDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+
+/*
+One producer per cache, so that services can inject their cache by its value type.
+The cache names double as the keys of near-cache.caches.* in the config.
+*/
+@ApplicationScoped
+@RequiredArgsConstructor
+public class NearCacheProducer {
+
+    private final NearCacheManager manager;
+
+    @Produces
+    @Singleton
+    NearCache<AuditLogRegistrationDTO> auditLogCache() {
+        return manager.create("auditLog", AuditLogRegistrationDTO.class);
+    }
+
+    @Produces
+    @Singleton
+    NearCache<MessageLogRegistrationDTO> messageLogCache() {
+        return manager.create("messageLog", MessageLogRegistrationDTO.class);
+    }
+
+    @Produces
+    @Singleton
+    NearCache<GuildLogConfigurationDTO> guildConfigCache() {
+        return manager.create("guildConfig", GuildLogConfigurationDTO.class);
+    }
+
+    @Produces
+    @Singleton
+    NearCache<MessageLogContentDTO> messageContentCache() {
+        return manager.create("messageContent", MessageLogContentDTO.class);
+    }
+}
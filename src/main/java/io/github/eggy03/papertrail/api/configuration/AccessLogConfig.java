@@ -0,0 +1,54 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Settings for the HTTP access log, see {@link io.github.eggy03.papertrail.api.accesslog.AccessLogWriter}.
+ * <p>
+ * Lines are logged to the {@code papertrail.access} category, so they can be given their own handler,
+ * level or format with {@code quarkus.log.category."papertrail.access".*}.
+ */
+@ConfigMapping(prefix = "access-log")
+public interface AccessLogConfig {
+
+    @WithDefault("true")
+    boolean enabled();
+
+    /**
+     * {@code text} for colored human-readable lines, {@code json} for one JSON object per line without ANSI codes
+     */
+    @WithDefault("text")
+    Format format();
+
+    /**
+     * Share of requests that are logged, between 0 and 1. Slow requests and server errors are always logged.
+     */
+    @WithDefault("1.0")
+    double sampleRate();
+
+    /**
+     * Requests taking at least this long are always logged. Together with a sample rate of 0, only slow requests are logged.
+     */
+    Optional<Duration> slowThreshold();
+
+    /**
+     * Maximum number of lines waiting to be written. Lines beyond this are dropped and counted.
+     */
+    @WithDefault("8192")
+    int capacity();
+
+    /**
+     * Maximum number of lines written in one batch.
+     */
+    @WithDefault("256")
+    int batchSize();
+
+    enum Format {
+        TEXT,
+        JSON
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+@ConfigMapping(prefix = "error-response")
+public interface ErrorResponseConfig {
+
+    /**
+     * Answer unknown messages and unregistered guilds with a bare 404 without a body.
+     * Clients of these endpoints only look at the status, and not-found is their most common result.
+     */
+    @WithDefault("false")
+    boolean bareNotFound();
+}
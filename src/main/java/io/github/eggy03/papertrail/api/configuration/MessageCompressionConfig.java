@@ -0,0 +1,27 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Settings for the compression of stored message content.
+ * <p>
+ * Reading is not affected by these settings: compressed and uncompressed content can always be read,
+ * so compression can be switched on and off without migrating existing rows.
+ */
+@ConfigMapping(prefix = "message.compression")
+public interface MessageCompressionConfig {
+
+    /**
+     * Whether new and updated message content is stored compressed. Off by default, see UPGRADING.md.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Content shorter than this many characters is always stored uncompressed,
+     * since it rarely gets smaller and is not worth the CPU.
+     */
+    @WithDefault("32")
+    int minLength();
+}
@@ -0,0 +1,95 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Settings for the locks around message content operations.
+ * <p>
+ * {@code message.locks.enabled} and {@code message.locks.strategy} are build time properties and decide which
+ * {@link io.github.eggy03.papertrail.api.service.locks.MessageLogContentOperation} gets built.
+ * The rest of the settings are read at runtime.
+ */
+@ConfigMapping(prefix = "message.locks")
+public interface MessageLocksConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * {@code fair} for a Redisson fair lock per operation, {@code striped} for the striped local + distributed locks
+     */
+    @WithDefault("fair")
+    String strategy();
+
+    Striped striped();
+
+    Contention contention();
+
+    interface Striped {
+
+        /**
+         * Number of in-JVM lock stripes, rounded up to the next power of two.
+         */
+        @WithDefault("1024")
+        int stripes();
+
+        /**
+         * When to take the distributed lock after the local stripe lock has been acquired.
+         */
+        @WithDefault("auto")
+        DistributedMode distributed();
+
+        @WithDefault("non-fair")
+        DistributedLockType distributedLockType();
+
+        /**
+         * In auto mode, how long a lock operation waits for this node to be seen by the other nodes before it is
+         * rejected with 503. A node only waits while it joins, or after Redis could not be reached.
+         */
+        @WithDefault("5s")
+        Duration joinTimeout();
+
+        /**
+         * Lease after which a distributed lock is released even if its holder never unlocked it.
+         * Without a lease, Redisson's watchdog keeps the lock alive for as long as the holding node is alive.
+         */
+        Optional<Duration> leaseTime();
+    }
+
+    interface Contention {
+
+        /**
+         * Number of message IDs the contention tracker keeps stats for. The most frequently locked IDs
+         * are found among them, with an overestimate of at most the smallest count in the table.
+         */
+        @WithDefault("100")
+        int topK();
+
+        /**
+         * Build time property. Whether {@code GET} and {@code DELETE /api/v1/admin/locks/contention} exist.
+         * They are not authenticated, so only enable them where the API can not be reached from outside.
+         */
+        @WithDefault("false")
+        boolean endpointEnabled();
+    }
+
+    enum DistributedMode {
+        /**
+         * take the distributed lock only while more than one node is alive.
+         * A joining node is not ready and holds its lock operations back until every other node has seen it,
+         * which delays its startup by two heartbeats.
+         */
+        AUTO,
+        ALWAYS,
+        NEVER
+    }
+
+    enum DistributedLockType {
+        FAIR,
+        NON_FAIR
+    }
+}
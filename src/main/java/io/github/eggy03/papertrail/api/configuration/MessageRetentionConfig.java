@@ -0,0 +1,84 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Settings for the retention cleanup of message content.
+ * <p>
+ * The message content table is partitioned by message ID (and with that by creation time). In {@code partition} mode
+ * expired messages are removed by dropping whole partitions. In {@code batch} mode they are deleted in small batches,
+ * each in its own transaction, by a job that runs every {@code interval} for at most {@code max-run-time}.
+ * <p>
+ * Future partitions are created in both modes, and even when retention is disabled, since saves need them.
+ */
+@ConfigMapping(prefix = "message.retention")
+public interface MessageRetentionConfig {
+
+    @WithDefault("true")
+    boolean enabled();
+
+    @WithDefault("partition")
+    Mode mode();
+
+    /**
+     * Messages older than this are deleted. The age of a message is taken from its Snowflake ID.
+     */
+    @WithDefault("30D")
+    Duration maxAge();
+
+    /**
+     * How often the cleanup job starts. Read by the scheduler.
+     */
+    @WithDefault("1h")
+    Duration interval();
+
+    /**
+     * Maximum number of messages deleted in one transaction.
+     */
+    @WithDefault("1000")
+    int batchSize();
+
+    /**
+     * Pause between two batches, leaves room for the regular load on the table.
+     */
+    @WithDefault("100ms")
+    Duration pause();
+
+    /**
+     * A run stops after this long even if expired messages are left, the next run continues where it stopped.
+     */
+    @WithDefault("5m")
+    Duration maxRunTime();
+
+    Partition partition();
+
+    interface Partition {
+
+        /**
+         * Range of message creation times covered by one partition.
+         */
+        @WithDefault("1D")
+        Duration interval();
+
+        /**
+         * How far into the future partitions are created.
+         */
+        @WithDefault("7D")
+        Duration ahead();
+    }
+
+    enum Mode {
+        /**
+         * Drop partitions whose messages have all expired.
+         * Expired messages of the legacy partition are still deleted in batches until it can be dropped.
+         */
+        PARTITION,
+        /**
+         * Delete expired messages row by row in batches
+         */
+        BATCH
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Settings for message content views.
+ */
+@ConfigMapping(prefix = "message.view")
+public interface MessageViewConfig {
+
+    /**
+     * How long a view of a message that has not been saved yet keeps polling for the save before returning 404.
+     * Zero disables waiting.
+     */
+    @WithDefault("0s")
+    Duration waitForSave();
+
+    /**
+     * Only messages created at most this long ago (by their Snowflake ID) are waited for.
+     * Older messages would have been saved by now, so a view of one that is missing returns 404 right away.
+     */
+    @WithDefault("5s")
+    Duration waitForSaveMaxAge();
+
+    /**
+     * Delay between two polls while waiting for a save.
+     */
+    @WithDefault("25ms")
+    Duration pollInterval();
+}
@@ -0,0 +1,51 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.Set;
+
+/*
+Publishes histogram buckets for the timers that latency is graphed and alerted on, so that percentiles can be
+aggregated across nodes in Prometheus (histogram_quantile) instead of being precomputed per node.
+
+- http.server.requests: per endpoint, tagged with the route template (uri="/api/v1/content/message/{messageId}")
+- papertrail.service: per service method, see the @Timed services
+- papertrail.lock.wait / papertrail.lock.hold: see LockMetrics
+
+The buckets are limited to 1ms..10s, which covers everything from a local cache hit to a request stuck behind a lock.
+*/
+@Singleton
+public class MetricsConfiguration {
+
+    private static final Set<String> HISTOGRAM_TIMERS = Set.of(
+            "http.server.requests",
+            "papertrail.service",
+            "papertrail.lock.wait",
+            "papertrail.lock.hold"
+    );
+
+    @Produces
+    @Singleton
+    MeterFilter latencyHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+
+                if (id.getType() != Meter.Type.TIMER || !HISTOGRAM_TIMERS.contains(id.getName()))
+                    return config;
+
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+                        .maximumExpectedValue((double) Duration.ofSeconds(10).toNanos())
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
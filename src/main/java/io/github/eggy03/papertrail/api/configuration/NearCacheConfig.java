@@ -0,0 +1,63 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithDefaults;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Settings for the two-tier caches ({@link io.github.eggy03.papertrail.api.cache.NearCache}).
+ * <p>
+ * Every cache has a bounded in-process tier (Caffeine) in front of a shared Redis tier.
+ * Caches are configured by name, e.g. {@code near-cache.caches."messageContent".maximum-size=10000}.
+ */
+@ConfigMapping(prefix = "near-cache")
+public interface NearCacheConfig {
+
+    /**
+     * Whether the in-process tier is used at all. When disabled, every read goes to Redis.
+     */
+    @WithDefault("true")
+    boolean localEnabled();
+
+    @WithDefaults
+    Map<String, CacheSpec> caches();
+
+    interface CacheSpec {
+
+        /**
+         * Maximum number of entries kept in the in-process tier of each node.
+         */
+        @WithDefault("10000")
+        long maximumSize();
+
+        /**
+         * How long an entry stays in the in-process tier after it was written.
+         * Invalidations from other nodes usually evict it much sooner, this only bounds the damage of a lost one.
+         */
+        @WithDefault("10m")
+        Duration localTtl();
+
+        /**
+         * How long an entry stays in Redis after it was written.
+         */
+        @WithDefault("30D")
+        Duration remoteTtl();
+
+        /**
+         * How long a key the loader found nothing for is remembered as absent in the in-process tier.
+         * Unset disables negative caching.
+         */
+        Optional<Duration> negativeTtl();
+
+        /**
+         * Keys are Snowflakes, and an entry never outlives the point where its key is this old.
+         * Set to message.retention.max-age for caches of messages, so that an entry is gone by the time
+         * retention removes its row. Unset keeps entries for the TTLs above, regardless of the key.
+         */
+        Optional<Duration> maxKeyAge();
+    }
+}
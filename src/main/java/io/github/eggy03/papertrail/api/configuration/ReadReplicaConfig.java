@@ -0,0 +1,38 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Settings for routing view reads to the read replica datasource ({@code quarkus.datasource."replica".*}).
+ * <p>
+ * {@code read-replica.enabled} is a build time property (like {@code message.locks.enabled}) and decides whether
+ * {@link io.github.eggy03.papertrail.api.repository.replica.ReplicaViewRepository} gets built at all.
+ * Without it every read goes to the primary. The rest of the settings are read at runtime.
+ */
+@ConfigMapping(prefix = "read-replica")
+public interface ReadReplicaConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Reads go to the primary while the replica lags behind by more than this.
+     */
+    @WithDefault("5s")
+    Duration maxLag();
+
+    /**
+     * How long reads of a message or guild go to the primary after this node wrote it.
+     */
+    @WithDefault("10s")
+    Duration readYourWritesWindow();
+
+    /**
+     * Whether a read that failed on the replica is retried on the primary. If disabled, the error is returned to the client.
+     */
+    @WithDefault("true")
+    boolean fallbackOnFailure();
+}
@@ -0,0 +1,26 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Settings for coalescing rapid updates of the same message, see
+ * {@link io.github.eggy03.papertrail.api.service.coalescing.UpdateCoalescingDecorator}.
+ * <p>
+ * Unlike {@code message.locks.enabled}, all of these are read at runtime.
+ */
+@ConfigMapping(prefix = "message.update-coalescing")
+public interface UpdateCoalescingConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * How long the first update of a message waits for more updates of the same message before writing.
+     * Every update pays up to this much extra latency.
+     */
+    @WithDefault("50ms")
+    Duration window();
+}
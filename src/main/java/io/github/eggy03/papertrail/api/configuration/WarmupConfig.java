@@ -0,0 +1,17 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Settings for the warm-up phase that runs before the application reports ready.
+ */
+@ConfigMapping(prefix = "warmup")
+public interface WarmupConfig {
+
+    /**
+     * When disabled, the application reports ready as soon as it has started.
+     */
+    @WithDefault("true")
+    boolean enabled();
+}
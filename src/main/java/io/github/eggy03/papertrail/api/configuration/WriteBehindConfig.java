@@ -0,0 +1,45 @@
+package io.github.eggy03.papertrail.api.configuration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Settings for the write-behind mode of message content saves.
+ * <p>
+ * {@code message.write-behind.enabled} is a build time property (like {@code message.locks.enabled})
+ * and decides which {@link io.github.eggy03.papertrail.api.service.locks.MessageLogContentOperation} gets built.
+ * Write-behind takes no Redisson locks, so the application does not start if {@code message.locks.enabled} is set too.
+ * The rest of the settings are read at runtime.
+ */
+@ConfigMapping(prefix = "message.write-behind")
+public interface WriteBehindConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Maximum number of saves waiting to be flushed. Saves beyond this are rejected with 503.
+     */
+    @WithDefault("10000")
+    int capacity();
+
+    /**
+     * Maximum number of messages written in one flush.
+     */
+    @WithDefault("500")
+    int batchSize();
+
+    /**
+     * Maximum time a save waits in the buffer for its batch to fill up.
+     */
+    @WithDefault("100ms")
+    Duration maxDelay();
+
+    /**
+     * Maximum time to wait for the buffer to drain on shutdown.
+     */
+    @WithDefault("30s")
+    Duration shutdownTimeout();
+}
@@ -1,11 +1,14 @@
 package io.github.eggy03.papertrail.api.controller;
 
+import io.github.eggy03.papertrail.api.configuration.ErrorResponseConfig;
 import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
 import io.github.eggy03.papertrail.api.service.AuditLogRegistrationService;
 import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
@@ -18,6 +21,8 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import lombok.RequiredArgsConstructor;
 
+import java.util.List;
+
 @Path("api/v1/log/audit")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -26,6 +31,7 @@ import lombok.RequiredArgsConstructor;
 public class AuditLogRegistrationController {
 
     private final AuditLogRegistrationService service;
+    private final ErrorResponseConfig errorResponseConfig;
 
     @POST
     public Response registerGuild(@Valid AuditLogRegistrationDTO dto) {
@@ -38,11 +44,28 @@ public class AuditLogRegistrationController {
     @GET
     @Path("/{guildId}")
     public Response getGuild(@PathParam("guildId") @Positive @NotNull Long guildId) {
+
+        // a bare 404 has no body to build, so unregistered guilds skip the exception and its mapper
+        if (errorResponseConfig.bareNotFound())
+            return service.findRegisteredGuild(guildId)
+                    .map(Response::ok)
+                    .orElseGet(() -> Response.status(Response.Status.NOT_FOUND))
+                    .build();
+
         return Response
                 .ok(service.viewRegisteredGuild(guildId))
                 .build();
     }
 
+    // POST because the list of IDs is too long for a query string, returns a map of guildId -> registration
+    @POST
+    @Path("/bulk")
+    public Response getGuilds(@NotEmpty @Size(max = 10000) List<@NotNull @Positive Long> guildIds) {
+        return Response
+                .ok(service.viewRegisteredGuilds(guildIds))
+                .build();
+    }
+
     @PUT
     public Response updateGuild(@Valid AuditLogRegistrationDTO dto) {
         return Response
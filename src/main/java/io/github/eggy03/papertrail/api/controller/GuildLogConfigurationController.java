@@ -0,0 +1,31 @@
+package io.github.eggy03.papertrail.api.controller;
+
+import io.github.eggy03.papertrail.api.service.GuildLogConfigurationService;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import lombok.RequiredArgsConstructor;
+
+// read-only, registrations are changed through the audit and message log endpoints
+@Path("api/v1/log/guild")
+@Produces(MediaType.APPLICATION_JSON)
+@RunOnVirtualThread
+@RequiredArgsConstructor
+public class GuildLogConfigurationController {
+
+    private final GuildLogConfigurationService service;
+
+    @GET
+    @Path("/{guildId}")
+    public Response getGuildConfiguration(@PathParam("guildId") @Positive @NotNull Long guildId) {
+        return Response
+                .ok(service.viewGuildConfiguration(guildId))
+                .build();
+    }
+}
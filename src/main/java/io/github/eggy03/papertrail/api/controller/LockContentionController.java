@@ -0,0 +1,46 @@
+package io.github.eggy03.papertrail.api.controller;
+
+import io.github.eggy03.papertrail.api.service.locks.LockContentionTracker;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import lombok.RequiredArgsConstructor;
+
+/*
+Lock contention of the node that answers, see LockContentionTracker.
+
+The endpoints have no authentication of their own, so they are only built with
+message.locks.contention.endpoint-enabled=true, which is off by default and in prod.
+*/
+@Path("/api/v1/admin/locks/contention")
+@Produces(MediaType.APPLICATION_JSON)
+@RunOnVirtualThread
+@IfBuildProperty(name = "message.locks.contention.endpoint-enabled", stringValue = "true")
+@RequiredArgsConstructor
+public class LockContentionController {
+
+    private final LockContentionTracker tracker;
+
+    @GET
+    public Response getHottestMessages(@QueryParam("limit") @DefaultValue("20") @Positive @Max(1000) int limit) {
+        return Response
+                .ok(tracker.hottest(limit))
+                .build();
+    }
+
+    // starts a new measurement window
+    @DELETE
+    public Response resetContention() {
+        tracker.reset();
+        return Response.noContent().build();
+    }
+}
@@ -1,11 +1,14 @@
 package io.github.eggy03.papertrail.api.controller;
 
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
 import io.github.eggy03.papertrail.api.service.locks.MessageLogContentOperation;
 import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
@@ -18,6 +21,8 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import lombok.RequiredArgsConstructor;
 
+import java.util.List;
+
 @Path("/api/v1/content/message")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -27,14 +32,24 @@ public class MessageLogContentController {
 
     private final MessageLogContentOperation service;
 
+    // in write-behind mode the save has only been buffered when this returns
     @POST
     public Response saveMessage(@Valid MessageLogContentDTO dto) {
         return Response
-                .status(Response.Status.CREATED)
+                .status(service.savesBuffered() ? Response.Status.ACCEPTED : Response.Status.CREATED)
                 .entity(service.saveMessage(dto))
                 .build();
     }
 
+    // items are validated individually by the service so that one invalid item does not reject the whole batch
+    @POST
+    @Path("/batch")
+    public Response saveMessages(@NotEmpty @Size(max = 500) List<MessageLogContentDTO> dtos) {
+        return Response
+                .ok(service.saveMessages(dtos))
+                .build();
+    }
+
     @GET
     @Path("/{messageId}")
     public Response getMessage(@PathParam("messageId") @Positive @NotNull Long messageId) {
@@ -50,6 +65,17 @@ public class MessageLogContentController {
                 .build();
     }
 
+    // saves or updates the message, whichever applies, 201 if it was saved and 200 if it was updated
+    @PUT
+    @Path("/upsert")
+    public Response upsertMessage(@Valid MessageLogContentDTO dto) {
+        MessageLogContentUpsertResultDTO result = service.upsertMessage(dto);
+        return Response
+                .status(result.isCreated() ? Response.Status.CREATED : Response.Status.OK)
+                .entity(result)
+                .build();
+    }
+
     @DELETE
     @Path("/{messageId}")
     public Response deleteMessage(@PathParam("messageId") @Positive @NotNull Long messageId) {
@@ -0,0 +1,13 @@
+package io.github.eggy03.papertrail.api.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+@RegisterForReflection
+public enum BatchItemStatus {
+
+    CREATED,
+
+    DUPLICATE,
+
+    INVALID
+}
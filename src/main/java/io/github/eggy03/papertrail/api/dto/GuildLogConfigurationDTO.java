@@ -0,0 +1,23 @@
+package io.github.eggy03.papertrail.api.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+Read-only view of both log registrations of a guild.
+A channel ID is null when the guild is not registered for that kind of logging.
+*/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@RegisterForReflection
+public class GuildLogConfigurationDTO {
+
+    private Long guildId;
+
+    private Long auditLogChannelId;
+
+    private Long messageLogChannelId;
+}
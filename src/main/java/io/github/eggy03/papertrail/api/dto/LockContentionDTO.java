@@ -0,0 +1,33 @@
+package io.github.eggy03.papertrail.api.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@RegisterForReflection
+public class LockContentionDTO {
+
+    private Long messageId;
+
+    // times the lock was acquired on this node, overestimated by at most acquisitionsError
+    private long acquisitions;
+
+    private long acquisitionsError;
+
+    // operations of this node waiting for the lock right now, and the most that were waiting at once
+    private int waiting;
+
+    private int maxWaiting;
+
+    private double meanWaitMillis;
+
+    private double maxWaitMillis;
+
+    private double meanHoldMillis;
+
+    private double maxHoldMillis;
+}
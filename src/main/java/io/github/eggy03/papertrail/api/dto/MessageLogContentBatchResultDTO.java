@@ -0,0 +1,20 @@
+package io.github.eggy03.papertrail.api.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@RegisterForReflection
+public class MessageLogContentBatchResultDTO {
+
+    private Long messageId;
+
+    private BatchItemStatus status;
+
+    // only populated for INVALID items, null otherwise
+    private String reason;
+}
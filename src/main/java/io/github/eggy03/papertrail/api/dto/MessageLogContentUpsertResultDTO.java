@@ -0,0 +1,18 @@
+package io.github.eggy03.papertrail.api.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@RegisterForReflection
+public class MessageLogContentUpsertResultDTO {
+
+    private MessageLogContentDTO message;
+
+    // true if the message was saved, false if an existing message was updated
+    private boolean created;
+}
@@ -1,6 +1,8 @@
 package io.github.eggy03.papertrail.api.entity;
 
+import io.github.eggy03.papertrail.api.entity.converter.MessageContentConverter;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
@@ -9,9 +11,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
-import org.hibernate.annotations.CreationTimestamp;
-
-import java.time.OffsetDateTime;
 
 @Entity
 @Getter
@@ -26,14 +25,14 @@ public class MessageLogContent {
     @Column(name = "message_id")
     private Long messageId;
 
-    @Column(name = "message_content", length = 4000, nullable = false)
+    // stored as bytea, compressed when it pays off (see MessageContentConverter)
+    @Convert(converter = MessageContentConverter.class)
+    @Column(name = "message_content", nullable = false)
     private String messageContent;
 
     @Column(name = "author_id", nullable = false)
     private Long authorId;
 
-    @CreationTimestamp
-    @Column(name = "created_at", nullable = false, updatable = false)
-    private OffsetDateTime createdAt;
+    // no creation time column, the message ID is a Snowflake that already carries it (see Snowflake.toInstant)
 
 }
@@ -0,0 +1,120 @@
+package io.github.eggy03.papertrail.api.entity.converter;
+
+import io.github.eggy03.papertrail.api.configuration.MessageCompressionConfig;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+Stores message content as bytea: one format byte followed by the payload.
+
+0x00 uncompressed UTF-8
+0x01 raw Deflate with the preset dictionary MessageContentDictionary.V1
+
+Content is compressed only if compression is enabled, the content is at least message.compression.min-length long,
+and the compressed form is actually smaller. Every format stays readable regardless of the settings.
+
+Developer Notes
+
+Deflate (java.util.zip) is used because it ships with the JDK and supports preset dictionaries.
+Chat messages are short, so most of the gain comes from the dictionary rather than from the message itself.
+
+Never change a dictionary once rows have been written with it. Add a new dictionary with a new format byte instead,
+and keep the old one for reading.
+*/
+@Converter
+@ApplicationScoped
+@RequiredArgsConstructor
+public class MessageContentConverter implements AttributeConverter<String, byte[]> {
+
+    static final byte FORMAT_PLAIN = 0x00;
+    static final byte FORMAT_DEFLATE_V1 = 0x01;
+
+    private final MessageCompressionConfig config;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String content) {
+
+        if (content == null)
+            return null;
+
+        byte[] plain = content.getBytes(StandardCharsets.UTF_8);
+        if (config.enabled() && content.length() >= config.minLength()) {
+            byte[] compressed = deflate(plain);
+            if (compressed.length < plain.length)
+                return withFormat(FORMAT_DEFLATE_V1, compressed);
+        }
+        return withFormat(FORMAT_PLAIN, plain);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] column) {
+
+        if (column == null)
+            return null;
+        if (column.length == 0)
+            throw new IllegalStateException("Stored message content has no format byte");
+
+        return switch (column[0]) {
+            case FORMAT_PLAIN -> new String(column, 1, column.length - 1, StandardCharsets.UTF_8);
+            case FORMAT_DEFLATE_V1 -> new String(inflate(column), StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("Unknown stored message content format " + column[0]);
+        };
+    }
+
+    private static byte[] deflate(byte[] plain) {
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(MessageContentDictionary.V1);
+            deflater.setInput(plain);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length);
+            byte[] buffer = new byte[Math.max(64, plain.length)];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] column) {
+
+        // raw inflate needs the dictionary up front, it does not ask for it like zlib streams do
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(MessageContentDictionary.V1);
+            inflater.setInput(column, 1, column.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(column.length * 4);
+            byte[] buffer = new byte[column.length * 4];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalStateException("Stored message content is truncated");
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Stored message content is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] withFormat(byte format, byte[] payload) {
+        byte[] column = new byte[payload.length + 1];
+        column[0] = format;
+        System.arraycopy(payload, 0, column, 1, payload.length);
+        return column;
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.eggy03.papertrail.api.entity.converter;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+Preset dictionaries for MessageContentConverter.
+
+Deflate can refer back to the dictionary as if it had been sent before the message, so strings that are common in
+Discord chat compress to a few bits even in a message of a dozen words. The dictionary is a sample of such strings:
+mentions, emoji and link prefixes, and frequent English words and phrases. Deflate encodes nearer matches
+with shorter distances, so the most common strings come last.
+
+A dictionary must never change once rows have been written with it, see MessageContentConverter.
+*/
+@UtilityClass
+class MessageContentDictionary {
+
+    static final byte[] V1 = ("""
+            https://www.youtube.com/watch?v=https://youtu.be/https://x.com/https://twitter.com/https://www.reddit.com/r/\
+            https://github.com/https://imgur.com/https://i.imgur.com/https://tenor.com/view/https://media.discordapp.net/attachments/\
+            https://cdn.discordapp.com/attachments/https://cdn.discordapp.com/emojis/https://discord.com/channels/https://discord.gg/\
+            .png.jpg.jpeg.gif.webp.mp4?ex=&is=&hm=&width=&height=\
+            ```java\n```js\n```py\n```\n||spoiler|| **bold** *italic* __underline__ ~~strike~~ > quote \
+            :joy: :sob: :skull: :pray: :fire: :heart: :thumbsup: :eyes: :smile: :rofl: :100: :clown: :white_check_mark: \
+            <a:<:<#<@&<@<t:>:R> @everyone @here \
+            Thank you so much! Thanks for the help. Good morning everyone. Good night guys. Happy birthday! \
+            What do you mean? What are you doing? How are you doing? Do you know if anyone can help me with this? \
+            I don't know, I think it's because I'm not sure. I can't believe that. It doesn't work for me. \
+            Does anyone know how to fix this? Is there a way to do that? Can someone please help me? \
+            Yeah that's what I was thinking. No problem, you're welcome. Let me know if you need anything else. \
+            I'm going to be honest with you, that's actually pretty good. Oh my god, that's so funny. \
+            we should play tonight, are you guys online? join the voice channel, I'll be there in a minute. \
+            the server, the game, the channel, the bot, the mods, the role, the message, the update, the link, \
+            because, probably, actually, literally, something, anything, everything, nothing, anyone, someone, \
+            would, could, should, about, there, their, they're, where, which, while, with, what, when, this, that, \
+            have, just, like, really, right, think, know, want, need, going, gonna, wanna, yeah, okay, lmao, lol, \
+            and the of the in the to the for the on the it is it's I'm you're don't can't that's what's \
+            """).getBytes(StandardCharsets.UTF_8);
+}
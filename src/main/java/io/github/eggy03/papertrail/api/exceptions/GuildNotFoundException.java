@@ -3,5 +3,5 @@ package io.github.eggy03.papertrail.api.exceptions;
 import lombok.experimental.StandardException;
 
 @StandardException
-public class GuildNotFoundException extends RuntimeException {
+public class GuildNotFoundException extends StacklessException {
 }
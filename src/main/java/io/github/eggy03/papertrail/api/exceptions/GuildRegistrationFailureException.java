@@ -3,5 +3,5 @@ package io.github.eggy03.papertrail.api.exceptions;
 import lombok.experimental.StandardException;
 
 @StandardException
-public class GuildRegistrationFailureException extends RuntimeException {
+public class GuildRegistrationFailureException extends StacklessException {
 }
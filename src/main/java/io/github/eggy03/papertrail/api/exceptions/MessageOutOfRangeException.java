@@ -0,0 +1,7 @@
+package io.github.eggy03.papertrail.api.exceptions;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class MessageOutOfRangeException extends StacklessException {
+}
@@ -0,0 +1,17 @@
+package io.github.eggy03.papertrail.api.exceptions;
+
+import lombok.experimental.StandardException;
+
+/*
+Base of the domain exceptions. They report expected outcomes (an unknown message, an unregistered guild, a duplicate save)
+that are mapped to a client error, so the stack trace is never looked at and is not filled in.
+The message tells which check failed, and a wrapped cause keeps its own stack trace.
+*/
+@StandardException
+public abstract class StacklessException extends RuntimeException {
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
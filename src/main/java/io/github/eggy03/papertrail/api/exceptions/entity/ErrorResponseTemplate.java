@@ -0,0 +1,71 @@
+package io.github.eggy03.papertrail.api.exceptions.entity;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Writes the JSON of an ErrorResponse without going through Jackson, for the mappers of the exceptions that are thrown often.
+
+Status and error name are fixed per mapper, and everything up to the message is built once per message and reused.
+Most messages are string constants at the throw sites. Those that are not, such as the messages of wrapped
+constraint violations, are built per response once MAX_CACHED_MESSAGES different messages have been cached.
+Only the timestamp and the path are added per response. The timestamp is formatted with ISO_LOCAL_DATE_TIME,
+which is what Jackson uses for a LocalDateTime (unlike LocalDateTime.toString, it never leaves out zero seconds),
+so the result is the same JSON Jackson writes for an ErrorResponse.
+*/
+public final class ErrorResponseTemplate {
+
+    // bounds the cache against messages that are not constants
+    private static final int MAX_CACHED_MESSAGES = 64;
+
+    private final Response.Status status;
+    private final String error;
+    private final Map<String, String> prefixes = new ConcurrentHashMap<>();
+
+    public ErrorResponseTemplate(Response.Status status, Class<? extends Throwable> error) {
+        this.status = status;
+        this.error = error.getSimpleName();
+    }
+
+    public Response.ResponseBuilder toResponse(String message, String path) {
+
+        String prefix = prefixes.get(String.valueOf(message));
+        if (prefix == null) {
+            prefix = prefix(message);
+            if (prefixes.size() < MAX_CACHED_MESSAGES)
+                prefixes.put(String.valueOf(message), prefix);
+        }
+
+        StringBuilder body = new StringBuilder(prefix.length() + 80).append(prefix)
+                .append(",\"timeStamp\":\"").append(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.now())).append("\",\"path\":");
+        appendString(body, path);
+        body.append('}');
+
+        return Response
+                .status(status)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(body.toString());
+    }
+
+    private String prefix(String message) {
+
+        StringBuilder prefix = new StringBuilder("{\"status\":").append(status.getStatusCode()).append(",\"error\":");
+        appendString(prefix, error);
+        prefix.append(",\"message\":");
+        appendString(prefix, message);
+        return prefix.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null)
+            json.append("null");
+        else
+            json.append('"').append(JsonStringEncoder.getInstance().quoteAsString(value)).append('"');
+    }
+}
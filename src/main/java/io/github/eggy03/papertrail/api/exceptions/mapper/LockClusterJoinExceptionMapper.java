@@ -0,0 +1,33 @@
+package io.github.eggy03.papertrail.api.exceptions.mapper;
+
+import io.github.eggy03.papertrail.api.exceptions.LockClusterJoinException;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import lombok.extern.slf4j.Slf4j;
+
+@Provider
+@Slf4j
+public class LockClusterJoinExceptionMapper implements ExceptionMapper<LockClusterJoinException> {
+
+    private static final ErrorResponseTemplate TEMPLATE = new ErrorResponseTemplate(Response.Status.SERVICE_UNAVAILABLE, LockClusterJoinException.class);
+
+    @Context
+    UriInfo uriInfo;
+
+    @Override
+    public Response toResponse(LockClusterJoinException e) {
+
+        log.warn(AnsiColor.YELLOW + "{}" + AnsiColor.RESET, e.getMessage());
+
+        // a join completes two heartbeats after Redis is reachable, so a retry within seconds can already succeed
+        return TEMPLATE.toResponse(e.getMessage(), uriInfo.getPath())
+                .header(HttpHeaders.RETRY_AFTER, 5)
+                .build();
+    }
+}
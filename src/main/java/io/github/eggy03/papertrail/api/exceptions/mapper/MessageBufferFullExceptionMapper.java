@@ -0,0 +1,33 @@
+package io.github.eggy03.papertrail.api.exceptions.mapper;
+
+import io.github.eggy03.papertrail.api.exceptions.MessageBufferFullException;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import lombok.extern.slf4j.Slf4j;
+
+@Provider
+@Slf4j
+public class MessageBufferFullExceptionMapper implements ExceptionMapper<MessageBufferFullException> {
+
+    private static final ErrorResponseTemplate TEMPLATE = new ErrorResponseTemplate(Response.Status.SERVICE_UNAVAILABLE, MessageBufferFullException.class);
+
+    @Context
+    UriInfo uriInfo;
+
+    @Override
+    public Response toResponse(MessageBufferFullException e) {
+
+        log.warn(AnsiColor.YELLOW + "{}" + AnsiColor.RESET, e.getMessage());
+
+        // the buffer drains every few hundred milliseconds, so clients can retry almost immediately
+        return TEMPLATE.toResponse(e.getMessage(), uriInfo.getPath())
+                .header(HttpHeaders.RETRY_AFTER, 1)
+                .build();
+    }
+}
@@ -1,8 +1,10 @@
 package io.github.eggy03.papertrail.api.exceptions.mapper;
 
+import io.github.eggy03.papertrail.api.configuration.ErrorResponseConfig;
 import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
-import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponse;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
 import io.github.eggy03.papertrail.api.util.AnsiColor;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
@@ -10,12 +12,15 @@ import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
-
 @Provider
 @Slf4j
 public class MessageNotFoundExceptionMapper implements ExceptionMapper<MessageNotFoundException> {
 
+    private static final ErrorResponseTemplate TEMPLATE = new ErrorResponseTemplate(Response.Status.NOT_FOUND, MessageNotFoundException.class);
+
+    @Inject
+    ErrorResponseConfig errorResponseConfig;
+
     @Context
     UriInfo uriInfo;
 
@@ -24,17 +29,10 @@ public class MessageNotFoundExceptionMapper implements ExceptionMapper<MessageNo
 
         log.debug(AnsiColor.MAGENTA + "{}" + AnsiColor.RESET, e.getMessage(), e);
 
-        ErrorResponse errorResponse = new ErrorResponse(
-                Response.Status.NOT_FOUND.getStatusCode(),
-                e.getClass().getSimpleName(),
-                e.getMessage(),
-                LocalDateTime.now(),
-                uriInfo.getPath()
-        );
-
-        return Response
-                .status(Response.Status.NOT_FOUND)
-                .entity(errorResponse)
+        if (errorResponseConfig.bareNotFound())
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        return TEMPLATE.toResponse(e.getMessage(), uriInfo.getPath())
                 .build();
     }
 }
@@ -0,0 +1,30 @@
+package io.github.eggy03.papertrail.api.exceptions.mapper;
+
+import io.github.eggy03.papertrail.api.exceptions.MessageOutOfRangeException;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import lombok.extern.slf4j.Slf4j;
+
+@Provider
+@Slf4j
+public class MessageOutOfRangeExceptionMapper implements ExceptionMapper<MessageOutOfRangeException> {
+
+    private static final ErrorResponseTemplate TEMPLATE = new ErrorResponseTemplate(Response.Status.BAD_REQUEST, MessageOutOfRangeException.class);
+
+    @Context
+    UriInfo uriInfo;
+
+    @Override
+    public Response toResponse(MessageOutOfRangeException e) {
+
+        log.debug(AnsiColor.MAGENTA + "{}" + AnsiColor.RESET, e.getMessage(), e);
+
+        return TEMPLATE.toResponse(e.getMessage(), uriInfo.getPath())
+                .build();
+    }
+}
@@ -1,7 +1,7 @@
 package io.github.eggy03.papertrail.api.exceptions.mapper;
 
 import io.github.eggy03.papertrail.api.exceptions.MessageSaveFailureException;
-import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponse;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
 import io.github.eggy03.papertrail.api.util.AnsiColor;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
@@ -10,12 +10,12 @@ import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
-
 @Provider
 @Slf4j
 public class MessageSaveFailureExceptionMapper implements ExceptionMapper<MessageSaveFailureException> {
 
+    private static final ErrorResponseTemplate TEMPLATE = new ErrorResponseTemplate(Response.Status.CONFLICT, MessageSaveFailureException.class);
+
     @Context
     UriInfo uriInfo;
 
@@ -24,17 +24,7 @@ public class MessageSaveFailureExceptionMapper implements ExceptionMapper<Messag
 
         log.debug(AnsiColor.MAGENTA + "{}" + AnsiColor.RESET, e.getMessage(), e);
 
-        ErrorResponse errorResponse = new ErrorResponse(
-                Response.Status.CONFLICT.getStatusCode(),
-                e.getClass().getSimpleName(),
-                e.getMessage(),
-                LocalDateTime.now(),
-                uriInfo.getPath()
-        );
-
-        return Response
-                .status(Response.Status.CONFLICT)
-                .entity(errorResponse)
+        return TEMPLATE.toResponse(e.getMessage(), uriInfo.getPath())
                 .build();
     }
 }
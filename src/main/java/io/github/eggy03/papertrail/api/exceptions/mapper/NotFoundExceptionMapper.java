@@ -1,6 +1,6 @@
 package io.github.eggy03.papertrail.api.exceptions.mapper;
 
-import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponse;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
 import io.github.eggy03.papertrail.api.util.AnsiColor;
 import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.core.Context;
@@ -10,12 +10,12 @@ import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
-
 @Provider
 @Slf4j
 public class NotFoundExceptionMapper implements ExceptionMapper<NotFoundException> {
 
+    private static final ErrorResponseTemplate TEMPLATE = new ErrorResponseTemplate(Response.Status.NOT_FOUND, NotFoundException.class);
+
     @Context
     UriInfo uriInfo;
 
@@ -24,17 +24,7 @@ public class NotFoundExceptionMapper implements ExceptionMapper<NotFoundExceptio
 
         log.debug("{}{}{}", AnsiColor.MAGENTA, e.getMessage(), AnsiColor.RESET, e);
 
-        ErrorResponse errorResponse = new ErrorResponse(
-                Response.Status.NOT_FOUND.getStatusCode(),
-                e.getClass().getSimpleName(),
-                e.getMessage(),
-                LocalDateTime.now(),
-                uriInfo.getPath()
-        );
-
-        return Response
-                .status(Response.Status.NOT_FOUND)
-                .entity(errorResponse)
+        return TEMPLATE.toResponse(e.getMessage(), uriInfo.getPath())
                 .build();
     }
 }
@@ -0,0 +1,30 @@
+package io.github.eggy03.papertrail.api.health;
+
+import io.github.eggy03.papertrail.api.configuration.MessageLocksConfig;
+import io.github.eggy03.papertrail.api.service.locks.LockClusterMembership;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+// with message.locks.striped.distributed=auto, a node must not take writes before every other node has seen it
+@Readiness
+@ApplicationScoped
+@IfBuildProperty(name = "message.locks.enabled", stringValue = "true")
+@IfBuildProperty(name = "message.locks.strategy", stringValue = "striped")
+@RequiredArgsConstructor
+public class LockClusterReadinessCheck implements HealthCheck {
+
+    private final LockClusterMembership membership;
+    private final MessageLocksConfig config;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse
+                .named("lock-cluster")
+                .status(config.striped().distributed() != MessageLocksConfig.DistributedMode.AUTO || membership.isSeenByAllNodes())
+                .build();
+    }
+}
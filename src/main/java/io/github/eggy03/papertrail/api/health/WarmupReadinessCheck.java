@@ -0,0 +1,24 @@
+package io.github.eggy03.papertrail.api.health;
+
+import io.github.eggy03.papertrail.api.service.warmup.ApplicationWarmup;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+@Readiness
+@ApplicationScoped
+@RequiredArgsConstructor
+public class WarmupReadinessCheck implements HealthCheck {
+
+    private final ApplicationWarmup warmup;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse
+                .named("warmup")
+                .status(warmup.isComplete())
+                .build();
+    }
+}
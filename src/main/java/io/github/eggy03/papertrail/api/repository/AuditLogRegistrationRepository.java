@@ -1,9 +1,51 @@
 package io.github.eggy03.papertrail.api.repository;
 
+import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
 import io.github.eggy03.papertrail.api.entity.AuditLogRegistration;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @ApplicationScoped
+@RequiredArgsConstructor
 public class AuditLogRegistrationRepository implements PanacheRepositoryBase<AuditLogRegistration, Long> {
+
+    // views read straight into DTOs, without creating managed entities that would only be mapped and dropped
+    private static final String SELECT_DTO = "select new " + AuditLogRegistrationDTO.class.getName() + "(r.guildId, r.channelId) from AuditLogRegistration r ";
+
+    private final ReadReplicaRouter replicaRouter;
+
+    // bulk HQL statements, so the registration is not loaded into the persistence context first
+    public boolean updateChannelId(Long guildId, Long channelId) {
+        return update("channelId = ?1 where guildId = ?2", channelId, guildId) > 0;
+    }
+
+    public boolean deleteByGuildId(Long guildId) {
+        return delete("guildId", guildId) > 0;
+    }
+
+    // from the read replica when ReadReplicaRouter allows it, a row read from the replica may only be cached briefly
+    public ReadReplicaRouter.Read<AuditLogRegistrationDTO> findDTOById(Long guildId) {
+        return replicaRouter.read(guildId, replica -> replica.findAuditLogRegistration(guildId), () -> getEntityManager()
+                .createQuery(SELECT_DTO + "where r.guildId = :guildId", AuditLogRegistrationDTO.class)
+                .setParameter("guildId", guildId)
+                .getResultStream()
+                .findFirst());
+    }
+
+    public List<AuditLogRegistrationDTO> findDTOsByGuildIds(Collection<Long> guildIds) {
+
+        if (guildIds.isEmpty())
+            return List.of();
+
+        return getEntityManager()
+                .createQuery(SELECT_DTO + "where r.guildId in :guildIds", AuditLogRegistrationDTO.class)
+                .setParameter("guildIds", guildIds)
+                .getResultList();
+    }
 }
@@ -0,0 +1,113 @@
+package io.github.eggy03.papertrail.api.repository;
+
+import io.agroal.api.AgroalDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+DDL for the partitions of message_log_content_table (see V2__partition_message_content.sql).
+
+Runs on plain JDBC connections in auto-commit mode, outside any JTA transaction,
+because DETACH PARTITION CONCURRENTLY can not run inside a transaction block.
+Partition names and bounds are generated by MessageContentPartitionJob, never taken from user input.
+Tables are qualified with the schema Hibernate uses, quarkus.hibernate-orm.database.default-schema.
+*/
+@ApplicationScoped
+public class MessageLogContentPartitionRepository {
+
+    // e.g. FOR VALUES FROM (MINVALUE) TO ('1234'), quotes depend on the server version
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\((MINVALUE|'?-?\\d+'?)\\) TO \\((MAXVALUE|'?-?\\d+'?)\\)");
+
+    private final AgroalDataSource dataSource;
+    private final String schemaPrefix; // "schema." or empty to use the search path
+    private final String parentTable;
+
+    public MessageLogContentPartitionRepository(AgroalDataSource dataSource,
+                                                @ConfigProperty(name = "quarkus.hibernate-orm.database.default-schema") Optional<String> schema) {
+        this.dataSource = dataSource;
+        this.schemaPrefix = schema.map(name -> name + ".").orElse("");
+        this.parentTable = schemaPrefix + "message_log_content_table";
+    }
+
+    /**
+     * A partition covering message IDs from {@code from} (inclusive) to {@code to} (exclusive).
+     * {@code MINVALUE} and {@code MAXVALUE} bounds are mapped to {@link Long#MIN_VALUE} and {@link Long#MAX_VALUE}.
+     */
+    public record Partition(String name, long from, long to, boolean detachPending) {
+
+        /**
+         * Whether this is the table that existed before partitioning, which holds every message up to its upper bound.
+         */
+        public boolean legacy() {
+            return from == Long.MIN_VALUE;
+        }
+    }
+
+    public List<Partition> findPartitions() throws SQLException {
+
+        String sql = """
+                select c.relname, pg_get_expr(c.relpartbound, c.oid), i.inhdetachpending
+                from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = '%s'::regclass
+                """.formatted(parentTable);
+
+        List<Partition> partitions = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+
+            while (resultSet.next()) {
+                Matcher matcher = BOUNDS.matcher(resultSet.getString(2));
+                if (!matcher.find())
+                    throw new SQLException("Unexpected partition bound for " + resultSet.getString(1) + ": " + resultSet.getString(2));
+
+                partitions.add(new Partition(
+                        resultSet.getString(1),
+                        parseBound(matcher.group(1), Long.MIN_VALUE),
+                        parseBound(matcher.group(2), Long.MAX_VALUE),
+                        resultSet.getBoolean(3)
+                ));
+            }
+        }
+        return partitions;
+    }
+
+    public void createPartition(String name, long from, long to) throws SQLException {
+        execute("create table if not exists %s%s partition of %s for values from (%d) to (%d)"
+                .formatted(schemaPrefix, name, parentTable, from, to));
+    }
+
+    /*
+    Detaching concurrently only takes a SHARE UPDATE EXCLUSIVE lock on the parent, so saves and views continue.
+    If it gets interrupted, the partition is left pending and has to be finalized.
+    */
+    public void dropPartition(Partition partition) throws SQLException {
+        execute("alter table %s detach partition %s%s %s"
+                .formatted(parentTable, schemaPrefix, partition.name(), partition.detachPending() ? "finalize" : "concurrently"));
+        execute("drop table %s%s".formatted(schemaPrefix, partition.name()));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static long parseBound(String bound, long unbounded) {
+        return bound.endsWith("VALUE")
+                ? unbounded
+                : Long.parseLong(bound.replace("'", ""));
+    }
+}
@@ -1,15 +1,112 @@
 package io.github.eggy03.papertrail.api.repository;
 
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
 import io.github.eggy03.papertrail.api.entity.MessageLogContent;
+import io.github.eggy03.papertrail.api.entity.converter.MessageContentConverter;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
+import io.github.eggy03.papertrail.api.util.Snowflake;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @ApplicationScoped
+@RequiredArgsConstructor
 public class MessageLogContentRepository implements PanacheRepositoryBase<MessageLogContent, Long> {
 
-    public long deleteOlderThan(OffsetDateTime cutOff) {
-        return delete("createdAt < ?1", cutOff);
+    private final MessageContentConverter contentConverter;
+    private final ReadReplicaRouter replicaRouter;
+
+    /*
+    Reads the message straight into its DTO for views, from the read replica when ReadReplicaRouter allows it
+    (a row read from the replica may only be cached briefly, see ReadReplicaRouter.staleFor).
+    On the primary it is a projection: it creates no managed entity, so the persistence context has nothing
+    to snapshot or dirty check, and there is no mapping step.
+    */
+    public ReadReplicaRouter.Read<MessageLogContentDTO> findDTOById(Long messageId) {
+        return replicaRouter.read(messageId, replica -> replica.findMessage(messageId), () -> getEntityManager()
+                .createQuery("select new " + MessageLogContentDTO.class.getName() + "(m.messageId, m.messageContent, m.authorId) " +
+                        "from MessageLogContent m where m.messageId = :messageId", MessageLogContentDTO.class)
+                .setParameter("messageId", messageId)
+                .getResultStream()
+                .findFirst());
+    }
+
+    /*
+    Inserts the message, or overwrites content and author if it already exists, in a single statement without reading it first.
+    Returns true if the row was inserted. xmax is only set on a row version that replaced an older one,
+    so it is 0 for an inserted row and non-zero for an updated one.
+
+    Native queries bypass the attribute converter, so the content is converted here.
+    */
+    public boolean upsert(Long messageId, String messageContent, Long authorId) {
+        return (Boolean) getEntityManager()
+                .createNativeQuery("""
+                        insert into {h-schema}message_log_content_table as m (message_id, message_content, author_id)
+                        values (:messageId, :messageContent, :authorId)
+                        on conflict (message_id) do update
+                        set message_content = excluded.message_content,
+                            author_id = excluded.author_id
+                        returning (xmax = 0)
+                        """, Boolean.class)
+                .setParameter("messageId", messageId)
+                .setParameter("messageContent", contentConverter.convertToDatabaseColumn(messageContent))
+                .setParameter("authorId", authorId)
+                .getSingleResult();
+    }
+
+    /*
+    Deletes at most limit messages older than the cutoff, oldest first, and returns their IDs.
+    Message IDs are Snowflakes, so every message created before the cutoff has an ID below the lowest ID
+    of the cutoff, and the batch is picked through the primary key. Rows that are locked by a concurrent
+    update or delete are skipped instead of waited on; they are picked up by a later batch.
+    */
+    @SuppressWarnings("unchecked")
+    public List<Long> deleteOlderThan(OffsetDateTime cutOff, int limit) {
+        return getEntityManager()
+                .createNativeQuery("""
+                        delete from {h-schema}message_log_content_table
+                        where message_id in (
+                            select message_id from {h-schema}message_log_content_table
+                            where message_id < :maxId
+                            order by message_id
+                            limit :limit
+                            for update skip locked
+                        )
+                        returning message_id
+                        """, Long.class)
+                .setParameter("maxId", Snowflake.lowestIdAt(cutOff.toInstant()))
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    /*
+    Bulk HQL statements, so the message is not loaded into the persistence context first.
+    Being single statements, they can not lose a concurrent update the way a read-modify-write could.
+    */
+    public boolean updateContent(Long messageId, String messageContent, Long authorId) {
+        return update("messageContent = ?1, authorId = ?2 where messageId = ?3",
+                messageContent, authorId, messageId) > 0;
+    }
+
+    public boolean deleteByMessageId(Long messageId) {
+        return delete("messageId", messageId) > 0;
+    }
+
+    public Set<Long> findExistingIds(Collection<Long> messageIds) {
+
+        if (messageIds.isEmpty())
+            return Set.of();
+
+        return new HashSet<>(getEntityManager()
+                .createQuery("select m.messageId from MessageLogContent m where m.messageId in :ids", Long.class)
+                .setParameter("ids", messageIds)
+                .getResultList());
     }
 }
@@ -0,0 +1,171 @@
+package io.github.eggy03.papertrail.api.repository.replica;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.eggy03.papertrail.api.configuration.ReadReplicaConfig;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.transaction.Status;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+Decides whether a view read goes to the read replica or to the primary.
+
+A read goes to the replica only if
+- the application was built with read-replica.enabled=true (otherwise there is no replica datasource at all)
+- the last lag check found the replica at most read-replica.max-lag behind
+- it does not run inside an active transaction, which has to see its own writes
+- this node has not written the same message or guild within read-replica.read-your-writes-window.
+  Message and guild IDs are Snowflakes and never collide, so one set of keys serves both.
+
+A row that is missing on the replica is read again from the primary, since it may just not have been replicated yet.
+That also covers a save on another node followed by a view on this one. A replica error marks the replica
+unhealthy until the next lag check and, with read-replica.fallback-on-failure, retries the read on the primary.
+
+Rows read from the replica can be up to read-replica.max-lag old, including rows the primary has deleted since,
+and the read-your-writes guard only covers writes of this node. Every read reports where it came from for that reason,
+and staleFor tells the near cache to keep such rows only in its local tier, for no longer than read-replica.max-lag.
+
+Metrics
+- papertrail.replica.reads: view reads by target (replica, primary, fallback)
+- papertrail.replica.lag: replication lag found by the last check
+*/
+@ApplicationScoped
+@Slf4j
+public class ReadReplicaRouter {
+
+    private final ReplicaViewRepository replica; // null unless built with read-replica.enabled=true
+    private final ReadReplicaConfig config;
+    private final TransactionSynchronizationRegistry transactions;
+
+    private final Cache<Long, Boolean> recentWrites;
+    private final AtomicLong lagMillis = new AtomicLong();
+    private volatile boolean replicaHealthy = false; // until the first lag check
+
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private final Counter fallbackReads;
+
+    public ReadReplicaRouter(Instance<ReplicaViewRepository> replica, ReadReplicaConfig config,
+                             TransactionSynchronizationRegistry transactions, MeterRegistry registry) {
+
+        this.replica = replica.isResolvable() ? replica.get() : null;
+        this.config = config;
+        this.transactions = transactions;
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(config.readYourWritesWindow())
+                .build();
+
+        this.replicaReads = counter(registry, "replica");
+        this.primaryReads = counter(registry, "primary");
+        this.fallbackReads = counter(registry, "fallback");
+        Gauge.builder("papertrail.replica.lag", lagMillis, millis -> millis.get() / 1000.0)
+                .description("Replication lag of the read replica found by the last check")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @FunctionalInterface
+    public interface ReplicaQuery<T> {
+        Optional<T> query(ReplicaViewRepository replica) throws SQLException;
+    }
+
+    /**
+     * The result of {@link #read}, and whether it came from the replica.
+     */
+    public record Read<T>(Optional<T> value, boolean fromReplica) {
+    }
+
+    /**
+     * Keeps reads of the key on the primary for {@code read-replica.read-your-writes-window}.
+     */
+    public void recordWrite(@NonNull Long key) {
+        if (replica != null)
+            recentWrites.put(key, Boolean.TRUE);
+    }
+
+    public <T> Read<T> read(@NonNull Long key, @NonNull ReplicaQuery<T> onReplica, @NonNull Supplier<Optional<T>> onPrimary) {
+
+        if (!useReplica(key)) {
+            primaryReads.increment();
+            return new Read<>(onPrimary.get(), false);
+        }
+
+        try {
+            Optional<T> result = onReplica.query(replica);
+            if (result.isPresent()) {
+                replicaReads.increment();
+                return new Read<>(result, true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            replicaHealthy = false;
+            if (!config.fallbackOnFailure())
+                throw new IllegalStateException("Read from the replica failed", e);
+            log.warn(AnsiColor.YELLOW + "Read from the replica failed, reading from the primary until the next lag check" + AnsiColor.RESET, e);
+        }
+
+        fallbackReads.increment();
+        return new Read<>(onPrimary.get(), false);
+    }
+
+    /**
+     * How far a value built from these reads may be behind the primary, to be passed on as {@link io.github.eggy03.papertrail.api.cache.NearCache.Loaded#staleFor()}.
+     *
+     * @return null if all of them came from the primary, read-replica.max-lag otherwise
+     */
+    public Duration staleFor(@NonNull Read<?>... reads) {
+        for (Read<?> read : reads)
+            if (read.fromReplica())
+                return config.maxLag();
+        return null;
+    }
+
+    @Scheduled(every = "5s")
+    void checkLag() {
+
+        if (replica == null)
+            return;
+
+        try {
+            Duration lag = replica.findReplicationLag();
+            lagMillis.set(lag.toMillis());
+
+            boolean healthy = lag.compareTo(config.maxLag()) <= 0;
+            if (healthy != replicaHealthy)
+                log.info("{}Read replica is {} (lag {}){}", healthy ? AnsiColor.GREEN : AnsiColor.YELLOW,
+                        healthy ? "serving views" : "too far behind, views go to the primary", lag, AnsiColor.RESET);
+            replicaHealthy = healthy;
+        } catch (SQLException | RuntimeException e) {
+            if (replicaHealthy)
+                log.warn(AnsiColor.YELLOW + "Read replica lag check failed, views go to the primary" + AnsiColor.RESET, e);
+            replicaHealthy = false;
+        }
+    }
+
+    private boolean useReplica(Long key) {
+        return replica != null
+                && replicaHealthy
+                && transactions.getTransactionStatus() != Status.STATUS_ACTIVE
+                && recentWrites.getIfPresent(key) == null;
+    }
+
+    private static Counter counter(MeterRegistry registry, String target) {
+        return Counter.builder("papertrail.replica.reads")
+                .description("View reads by the datasource that answered them")
+                .tag("target", target)
+                .register(registry);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.eggy03.papertrail.api.repository.replica;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.entity.converter.MessageContentConverter;
+import io.quarkus.agroal.DataSource;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+
+/*
+The view queries of the repositories, run on the read replica datasource.
+
+Plain JDBC instead of a second Hibernate persistence unit, since Panache entities can only belong to one unit
+and views only ever read a single row by primary key. Message content is decoded with the same converter Hibernate uses.
+Tables are qualified with the schema Hibernate uses, quarkus.hibernate-orm.database.default-schema.
+*/
+@ApplicationScoped
+@IfBuildProperty(name = "read-replica.enabled", stringValue = "true")
+public class ReplicaViewRepository {
+
+    private final AgroalDataSource dataSource;
+    private final MessageContentConverter contentConverter;
+    private final String schemaPrefix; // "schema." or empty to use the search path
+
+    public ReplicaViewRepository(@DataSource("replica") AgroalDataSource dataSource, MessageContentConverter contentConverter,
+                                 @ConfigProperty(name = "quarkus.hibernate-orm.database.default-schema") Optional<String> schema) {
+        this.dataSource = dataSource;
+        this.contentConverter = contentConverter;
+        this.schemaPrefix = schema.map(name -> name + ".").orElse("");
+    }
+
+    public Optional<MessageLogContentDTO> findMessage(Long messageId) throws SQLException {
+
+        String sql = "select message_content, author_id from " + schemaPrefix + "message_log_content_table where message_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setLong(1, messageId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next())
+                    return Optional.empty();
+
+                return Optional.of(new MessageLogContentDTO(
+                        messageId,
+                        contentConverter.convertToEntityAttribute(resultSet.getBytes(1)),
+                        resultSet.getLong(2)
+                ));
+            }
+        }
+    }
+
+    public Optional<AuditLogRegistrationDTO> findAuditLogRegistration(Long guildId) throws SQLException {
+        return findChannelId("audit_log_table", guildId)
+                .map(channelId -> new AuditLogRegistrationDTO(guildId, channelId));
+    }
+
+    public Optional<MessageLogRegistrationDTO> findMessageLogRegistration(Long guildId) throws SQLException {
+        return findChannelId("message_log_registration_table", guildId)
+                .map(channelId -> new MessageLogRegistrationDTO(guildId, channelId));
+    }
+
+    /**
+     * @return how far the replica is behind the primary, zero if it has replayed everything it received
+     */
+    public Duration findReplicationLag() throws SQLException {
+
+        String sql = """
+                select case
+                    when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                    else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                end
+                """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+
+            resultSet.next();
+            return Duration.ofMillis(resultSet.getLong(1));
+        }
+    }
+
+    private Optional<Long> findChannelId(String table, Long guildId) throws SQLException {
+
+        String sql = "select channel_id from " + schemaPrefix + table + " where guild_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setLong(1, guildId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? Optional.of(resultSet.getLong(1)) : Optional.empty();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.eggy03.papertrail.api.service;
+
+import io.github.eggy03.papertrail.api.cache.NearCache;
+import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.dto.GuildLogConfigurationDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.exceptions.GuildNotFoundException;
+import io.github.eggy03.papertrail.api.repository.AuditLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
+import io.smallrye.common.constraint.NotNull;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/*
+Answers "where does this guild log to" for both kinds of logging with a single lookup.
+
+The combined configuration is cached as one entry per guild in the "guildConfig" near cache.
+AuditLogRegistrationService and MessageLogRegistrationService call invalidate after every
+register, update and delete, so the entry never outlives a change to either registration.
+*/
+@ApplicationScoped
+@RequiredArgsConstructor
+public class GuildLogConfigurationService {
+
+    private final AuditLogRegistrationRepository auditLogRepository;
+    private final MessageLogRegistrationRepository messageLogRepository;
+    private final NearCache<GuildLogConfigurationDTO> cache;
+    private final ReadReplicaRouter replicaRouter;
+
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public @NotNull GuildLogConfigurationDTO viewGuildConfiguration(@NonNull Long guildId) {
+
+        GuildLogConfigurationDTO dto = cache.getOrLoad(guildId, this::loadConfiguration);
+
+        if (dto == null)
+            throw new GuildNotFoundException("Guild is not registered for audit or message logging");
+
+        return dto;
+    }
+
+    // deferred until commit when called inside a transaction, see NearCache
+    public void invalidate(@NonNull Long guildId) {
+        cache.invalidate(guildId);
+    }
+
+    // only cached briefly if either half was read from the read replica
+    private NearCache.Loaded<GuildLogConfigurationDTO> loadConfiguration(Long guildId) {
+
+        ReadReplicaRouter.Read<AuditLogRegistrationDTO> auditLogRead = auditLogRepository.findDTOById(guildId);
+        ReadReplicaRouter.Read<MessageLogRegistrationDTO> messageLogRead = messageLogRepository.findDTOById(guildId);
+        Duration staleFor = replicaRouter.staleFor(auditLogRead, messageLogRead);
+
+        Optional<AuditLogRegistrationDTO> auditLog = auditLogRead.value();
+        Optional<MessageLogRegistrationDTO> messageLog = messageLogRead.value();
+
+        if (auditLog.isEmpty() && messageLog.isEmpty())
+            return new NearCache.Loaded<>(null, staleFor);
+
+        return new NearCache.Loaded<>(new GuildLogConfigurationDTO(
+                guildId,
+                auditLog.map(AuditLogRegistrationDTO::getChannelId).orElse(null),
+                messageLog.map(MessageLogRegistrationDTO::getChannelId).orElse(null)
+        ), staleFor);
+    }
+}
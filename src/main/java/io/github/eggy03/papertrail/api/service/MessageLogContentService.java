@@ -1,88 +1,211 @@
 package io.github.eggy03.papertrail.api.service;
 
+import io.github.eggy03.papertrail.api.cache.NearCache;
+import io.github.eggy03.papertrail.api.dto.BatchItemStatus;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
-import io.github.eggy03.papertrail.api.entity.MessageLogContent;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
 import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.exceptions.MessageOutOfRangeException;
 import io.github.eggy03.papertrail.api.exceptions.MessageSaveFailureException;
 import io.github.eggy03.papertrail.api.mapper.MessageLogContentMapper;
 import io.github.eggy03.papertrail.api.repository.MessageLogContentRepository;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
 import io.github.eggy03.papertrail.api.util.AnsiColor;
-import io.quarkus.cache.CacheKey;
-import io.quarkus.scheduler.Scheduled;
+import io.micrometer.core.annotation.Timed;
 import io.smallrye.common.constraint.NotNull;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
 
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "papertrail.service", description = "Service method latency, tagged with class and method")
 public class MessageLogContentService {
 
+    private static final String CHECK_VIOLATION = "23514"; // PostgreSQL SQLSTATE, also used for a row that fits no partition
+
     private final MessageLogContentRepository repository;
     private final MessageLogContentMapper mapper;
+    private final Validator validator;
+    private final NearCache<MessageLogContentDTO> cache;
+    private final ReadReplicaRouter replicaRouter; // saves need no read-your-writes guard, a row missing on the replica is read from the primary
 
     @Transactional
     public @NotNull MessageLogContentDTO saveMessage(@NonNull MessageLogContentDTO dto) {
 
         try {
             repository.persistAndFlush(mapper.toEntity(dto));
+            cache.put(dto.getMessageId(), dto); // written through after commit, the client usually views it right away
             log.debug("{}Saved message with ID={}{}", AnsiColor.GREEN, dto.getMessageId(), AnsiColor.RESET);
             return dto;
         } catch (ConstraintViolationException e) {// from hibernate
-            throw new MessageSaveFailureException(e);
+            throw saveFailure(e);
         }
         // API Note: While ConstraintViolationException covers for a lot of constraints other than PK constraint
         // We have already covered them during dto validation phase in the controller
-        // So realistically, only PK/UK constraint issues will be propagated from here
+        // So realistically, only PK/UK constraint issues will be propagated from here, and the missing partition of saveFailure
+    }
+
+    /*
+    Saves all the valid, non-duplicate messages of the batch in a single transaction.
+    The inserts are sent in JDBC batches (see quarkus.hibernate-orm.jdbc.statement-batch-size) on a single flush.
+
+    Instead of letting one bad item fail the whole batch, every item gets its own result:
+    - INVALID if it fails DTO validation (which the controller can't do for individual items)
+    - DUPLICATE if the messageId already exists in the DB or appears earlier in the same batch
+    - CREATED otherwise
+
+    Existing IDs are looked up with a single IN query before persisting, so PK conflicts are filtered out
+    before they can abort the transaction. A conflict can still occur if another request saves one of the same
+    IDs between the lookup and the flush, in which case the whole batch fails the same way saveMessage does.
+
+    Unlike saveMessage, batch saves are not written through to the cache. Writing hundreds of entries
+    to Redis per batch would cost more than the first view of each message loading it on demand.
+    */
+    @Transactional
+    public @NotNull List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos) {
+
+        MessageLogContentBatchResultDTO[] results = new MessageLogContentBatchResultDTO[dtos.size()];
+        Map<Long, Integer> candidates = new LinkedHashMap<>(); // messageId -> index in batch
+
+        for (int i = 0; i < dtos.size(); i++) {
+
+            MessageLogContentDTO dto = dtos.get(i);
+            if (dto == null) {
+                results[i] = new MessageLogContentBatchResultDTO(null, BatchItemStatus.INVALID, "Message cannot be null");
+                continue;
+            }
+
+            Set<ConstraintViolation<MessageLogContentDTO>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                String reason = violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                results[i] = new MessageLogContentBatchResultDTO(dto.getMessageId(), BatchItemStatus.INVALID, reason);
+            } else if (candidates.putIfAbsent(dto.getMessageId(), i) != null) {
+                results[i] = new MessageLogContentBatchResultDTO(dto.getMessageId(), BatchItemStatus.DUPLICATE, null);
+            }
+        }
+
+        Set<Long> existingIds = repository.findExistingIds(candidates.keySet());
+
+        candidates.forEach((messageId, index) -> {
+            if (existingIds.contains(messageId)) {
+                results[index] = new MessageLogContentBatchResultDTO(messageId, BatchItemStatus.DUPLICATE, null);
+            } else {
+                repository.persist(mapper.toEntity(dtos.get(index)));
+                results[index] = new MessageLogContentBatchResultDTO(messageId, BatchItemStatus.CREATED, null);
+            }
+        });
+
+        try {
+            repository.flush();
+        } catch (ConstraintViolationException e) { // from hibernate
+            throw saveFailure(e);
+        }
+
+        log.debug("{}Saved {} of {} messages in batch{}", AnsiColor.GREEN, candidates.size() - existingIds.size(), dtos.size(), AnsiColor.RESET);
+        return Arrays.asList(results);
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
-    public @NotNull MessageLogContentDTO getMessage(@NonNull @CacheKey Long messageId) {
+    public @NotNull MessageLogContentDTO getMessage(@NonNull Long messageId) {
 
-        MessageLogContent entity = repository
-                .findByIdOptional(messageId)
-                .orElseThrow(() -> new MessageNotFoundException("Message hasn't been saved yet"));
+        MessageLogContentDTO dto = cache.getOrLoad(messageId, id -> {
+            ReadReplicaRouter.Read<MessageLogContentDTO> read = repository.findDTOById(id);
+            return new NearCache.Loaded<>(read.value().orElse(null), replicaRouter.staleFor(read));
+        });
 
-        return mapper.toDTO(entity);
+        if (dto == null)
+            throw new MessageNotFoundException("Message hasn't been saved yet");
+
+        return dto;
     }
 
     @Transactional
-    public @NotNull MessageLogContentDTO updateMessage(@NonNull @CacheKey Long messageId, @NonNull MessageLogContentDTO updatedDto) {
+    public @NotNull MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO updatedDto) {
 
-        // this check is mostly redundant because the clients usually call view message before updating
-        MessageLogContent entity = repository
-                .findByIdOptional(messageId)
-                .orElseThrow(() -> new MessageNotFoundException("Message to be updated was never saved"));
+        // a single UPDATE without loading the message first, no row updated means it was never saved
+        if (!repository.updateContent(messageId, updatedDto.getMessageContent(), updatedDto.getAuthorId()))
+            throw new MessageNotFoundException("Message to be updated was never saved");
 
-        // quarkus will automatically detect changes to this entity and update the database
-        entity.setMessageContent(updatedDto.getMessageContent());
-        entity.setAuthorId(updatedDto.getAuthorId());
+        replicaRouter.recordWrite(messageId);
+        cache.put(messageId, new MessageLogContentDTO(messageId, updatedDto.getMessageContent(), updatedDto.getAuthorId()));
 
         log.debug("{}Updated message content having ID={}{}", AnsiColor.GREEN, messageId, AnsiColor.RESET);
         return updatedDto;
     }
 
+    /*
+    Saves the message, or updates it if it has already been saved, in one statement and without reading it first
+    (see MessageLogContentRepository.upsert). Unlike saveMessage and updateMessage, it does not matter
+    which of the two arrives first.
+    */
     @Transactional
-    public void deleteMessage(@NonNull @CacheKey Long messageId) {
+    public @NotNull MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto) {
 
-        if (repository.deleteById(messageId))
-            log.debug("{} Deleted message having ID={}{}", AnsiColor.GREEN, messageId, AnsiColor.RESET);
-        else
-            throw new MessageNotFoundException("Message to be deleted was never saved");
+        boolean created;
+        try {
+            created = repository.upsert(dto.getMessageId(), dto.getMessageContent(), dto.getAuthorId());
+        } catch (ConstraintViolationException e) { // from hibernate
+            throw saveFailure(e);
+        }
+        replicaRouter.recordWrite(dto.getMessageId());
+        cache.put(dto.getMessageId(), dto);
+
+        log.debug("{}{} message with ID={}{}", AnsiColor.GREEN, created ? "Saved" : "Updated", dto.getMessageId(), AnsiColor.RESET);
+        return new MessageLogContentUpsertResultDTO(dto, created);
     }
 
-    @Scheduled(every = "24h")
     @Transactional
-    public void cleanupMessages() {
-        OffsetDateTime cutoff = OffsetDateTime.now(ZoneOffset.UTC).minusDays(30);
-        long deletedMessageCount = repository.deleteOlderThan(cutoff);
-        log.info("{}Message Content Cleanup Service- Cleaned up {} messages older than {}{}", AnsiColor.GREEN, deletedMessageCount, cutoff, AnsiColor.RESET);
+    public void deleteMessage(@NonNull Long messageId) {
+
+        // a single DELETE, unlike deleteById which loads the message first
+        if (!repository.deleteByMessageId(messageId))
+            throw new MessageNotFoundException("Message to be deleted was never saved");
+
+        replicaRouter.recordWrite(messageId);
+        cache.invalidate(messageId);
+
+        log.debug("{} Deleted message having ID={}{}", AnsiColor.GREEN, messageId, AnsiColor.RESET);
+    }
+
+    /*
+    message_log_content_table has no default partition (see MessageContentPartitionJob). A message whose ID is below
+    the lowest partition, because it expired and its partition was dropped, or past the last one fits no partition.
+    PostgreSQL reports that as a check violation, which hibernate maps to the same exception as a duplicate ID.
+    There are no check constraints on the table, so a check violation always means a missing partition.
+    */
+    private static RuntimeException saveFailure(ConstraintViolationException e) {
+        if (CHECK_VIOLATION.equals(e.getSQLState()))
+            return new MessageOutOfRangeException("No partition exists for the message ID, it is older than the retention period or newer than the partitions created so far", e);
+        return new MessageSaveFailureException(e);
+    }
+
+    /*
+    Deletes one batch of expired messages in its own transaction and evicts them from the cache.
+    Called repeatedly by MessageContentRetentionJob, returns the number of deleted messages.
+    */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public int deleteExpiredMessages(@NonNull OffsetDateTime cutoff, int limit) {
+        List<Long> deletedIds = repository.deleteOlderThan(cutoff, limit);
+        cache.invalidateAll(deletedIds);
+        return deletedIds.size();
     }
 }
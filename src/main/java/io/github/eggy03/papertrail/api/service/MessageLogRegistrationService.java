@@ -1,15 +1,14 @@
 package io.github.eggy03.papertrail.api.service;
 
+import io.github.eggy03.papertrail.api.cache.NearCache;
 import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
-import io.github.eggy03.papertrail.api.entity.MessageLogRegistration;
 import io.github.eggy03.papertrail.api.exceptions.GuildNotFoundException;
 import io.github.eggy03.papertrail.api.exceptions.GuildRegistrationFailureException;
 import io.github.eggy03.papertrail.api.mapper.MessageLogRegistrationMapper;
 import io.github.eggy03.papertrail.api.repository.MessageLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
 import io.github.eggy03.papertrail.api.util.AnsiColor;
-import io.quarkus.cache.CacheInvalidate;
-import io.quarkus.cache.CacheKey;
-import io.quarkus.cache.CacheResult;
+import io.micrometer.core.annotation.Timed;
 import io.smallrye.common.constraint.NotNull;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
@@ -18,19 +17,31 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @ApplicationScoped
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "papertrail.service", description = "Service method latency, tagged with class and method")
 public class MessageLogRegistrationService {
 
     private final MessageLogRegistrationRepository repository;
     private final MessageLogRegistrationMapper mapper;
+    private final NearCache<MessageLogRegistrationDTO> cache;
+    private final GuildLogConfigurationService configurationService; // combined view of both registrations
+    private final ReadReplicaRouter replicaRouter;
 
     @Transactional
     public @NotNull MessageLogRegistrationDTO registerGuild(@NonNull MessageLogRegistrationDTO dto) {
 
         try {
             repository.persistAndFlush(mapper.toEntity(dto));
+            cache.put(dto.getGuildId(), dto); // also clears a cached "not registered" on every node
+            configurationService.invalidate(dto.getGuildId());
             log.debug("{}Saved message log guild with ID={}{}", AnsiColor.GREEN, dto.getGuildId(), AnsiColor.RESET);
             return dto;
         } catch (ConstraintViolationException e) { // from hibernate
@@ -39,38 +50,62 @@ public class MessageLogRegistrationService {
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
-    @CacheResult(cacheName = "messageLog")
-    public @NotNull MessageLogRegistrationDTO viewRegisteredGuild(@NonNull @CacheKey Long guildId) {
-
-        MessageLogRegistration entity = repository
-                .findByIdOptional(guildId)
+    public @NotNull MessageLogRegistrationDTO viewRegisteredGuild(@NonNull Long guildId) {
+        return findRegisteredGuild(guildId)
                 .orElseThrow(() -> new GuildNotFoundException("Guild is not registered for message logging"));
+    }
+
+    /*
+    Same lookup as viewRegisteredGuild, but reports an unregistered guild as empty instead of throwing.
+    The GET endpoint uses it when error-response.bare-not-found is set, since the 404 then needs no exception to map.
+    Unregistered guilds are cached as absent for near-cache.caches."messageLog".negative-ttl.
+    */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public @NotNull Optional<MessageLogRegistrationDTO> findRegisteredGuild(@NonNull Long guildId) {
+        return Optional.ofNullable(cache.getOrLoad(guildId, id -> {
+            ReadReplicaRouter.Read<MessageLogRegistrationDTO> read = repository.findDTOById(id);
+            return new NearCache.Loaded<>(read.value().orElse(null), replicaRouter.staleFor(read));
+        }));
+    }
 
-        return mapper.toDTO(entity);
+    /*
+    Looks up many guilds at once, for example when a shard starts up.
+    Cached guilds are served from the near cache (local tier, then a Redis MGET), the rest is loaded with
+    IN queries. Guilds that are not registered are left out of the result.
+    */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public @NotNull Map<Long, MessageLogRegistrationDTO> viewRegisteredGuilds(@NonNull Collection<Long> guildIds) {
+        return cache.getAll(guildIds, ids -> repository
+                .findDTOsByGuildIds(ids)
+                .stream()
+                .collect(Collectors.toMap(MessageLogRegistrationDTO::getGuildId, Function.identity())));
     }
 
     @Transactional
-    @CacheInvalidate(cacheName = "messageLog")
-    public @NotNull MessageLogRegistrationDTO updateRegisteredGuild(@NonNull @CacheKey Long guildId, @NonNull MessageLogRegistrationDTO updatedDto) {
+    public @NotNull MessageLogRegistrationDTO updateRegisteredGuild(@NonNull Long guildId, @NonNull MessageLogRegistrationDTO updatedDto) {
 
-        // dirty checking
-        MessageLogRegistration entity = repository
-                .findByIdOptional(guildId)
-                .orElseThrow(() -> new GuildNotFoundException("Guild is not registered"));
+        // a single UPDATE without loading the registration first, no row updated means it is not registered
+        if (!repository.updateChannelId(guildId, updatedDto.getChannelId()))
+            throw new GuildNotFoundException("Guild is not registered");
 
-        entity.setChannelId(updatedDto.getChannelId());
+        replicaRouter.recordWrite(guildId);
+        cache.invalidate(guildId);
+        configurationService.invalidate(guildId);
 
         log.debug("{}Updated message log guild with ID={}{}", AnsiColor.GREEN, guildId, AnsiColor.RESET);
         return updatedDto;
     }
 
     @Transactional
-    @CacheInvalidate(cacheName = "messageLog")
-    public void deleteRegisteredGuild(@NonNull @CacheKey Long guildId) {
+    public void deleteRegisteredGuild(@NonNull Long guildId) {
 
-        if (repository.deleteById(guildId))
+        if (repository.deleteByGuildId(guildId)) {
+            replicaRouter.recordWrite(guildId);
+            cache.invalidate(guildId);
+            configurationService.invalidate(guildId);
             log.debug("{} Deleted message log guild with ID={}{}", AnsiColor.GREEN, guildId, AnsiColor.RESET);
-        else
+        } else {
             throw new GuildNotFoundException("Guild is not registered for message logging");
+        }
     }
 }
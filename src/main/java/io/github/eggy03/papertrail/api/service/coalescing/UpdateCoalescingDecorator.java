@@ -0,0 +1,203 @@
+package io.github.eggy03.papertrail.api.service.coalescing;
+
+import io.github.eggy03.papertrail.api.configuration.UpdateCoalescingConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
+import io.github.eggy03.papertrail.api.service.locks.MessageLogContentOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.common.constraint.NotNull;
+import jakarta.annotation.Priority;
+import jakarta.decorator.Decorator;
+import jakarta.decorator.Delegate;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+Collapses updates of the same message that arrive within message.update-coalescing.window into a single update.
+
+The first update of a message opens a batch and waits for the window. Updates of the same message arriving meanwhile
+join the batch and replace its content. When the window is over, the batch is closed and only its latest content
+is written, through whichever MessageLogContentOperation implementation was built (so it still takes the lock).
+Every update of the batch returns the result of that one write, or throws its exception.
+Updates arriving while the write is running open the next batch.
+
+A decorator, so it works in front of every implementation, including write-behind.
+An upsert or delete of a message with an open batch closes the batch right away and waits for its write,
+so that it runs after the updates that arrived before it. Otherwise an update followed by an upsert
+would end with the content of the update. The other operations are passed through unchanged.
+
+Metrics
+- papertrail.update.coalescing.requests: updates received
+- papertrail.update.coalescing.writes: updates written, the coalescing ratio is requests / writes
+- papertrail.update.coalescing.batch.size: updates per write
+
+Developer Notes
+
+Batches are per node, updates of the same message on different nodes are not coalesced.
+Callers park for the window, which is cheap on the virtual threads the controllers run on.
+*/
+@Decorator
+@Priority(1)
+@Slf4j
+public class UpdateCoalescingDecorator implements MessageLogContentOperation {
+
+    private final MessageLogContentOperation delegate;
+    private final UpdateCoalescingConfig config;
+
+    private final Map<Long, Batch> openBatches = new ConcurrentHashMap<>();
+
+    private final Counter requests;
+    private final Counter writes;
+    private final DistributionSummary batchSizes;
+
+    @Inject
+    public UpdateCoalescingDecorator(@Delegate @Any MessageLogContentOperation delegate, UpdateCoalescingConfig config, MeterRegistry registry) {
+
+        this.delegate = delegate;
+        this.config = config;
+        this.requests = Counter.builder("papertrail.update.coalescing.requests")
+                .description("Message updates received by the coalescing stage")
+                .register(registry);
+        this.writes = Counter.builder("papertrail.update.coalescing.writes")
+                .description("Message updates written after coalescing")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("papertrail.update.coalescing.batch.size")
+                .description("Message updates collapsed into one write")
+                .register(registry);
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+
+        if (!config.enabled())
+            return delegate.updateMessage(messageId, dto);
+
+        requests.increment();
+
+        Batch[] joined = new Batch[1];
+        boolean[] leader = new boolean[1];
+        openBatches.compute(messageId, (id, batch) -> {
+            if (batch == null) {
+                batch = new Batch();
+                leader[0] = true;
+            }
+            batch.latest = dto;
+            batch.size++;
+            joined[0] = batch;
+            return batch;
+        });
+
+        Batch batch = joined[0];
+        if (leader[0])
+            write(messageId, batch);
+
+        try {
+            return batch.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    private void write(Long messageId, Batch batch) {
+
+        boolean interrupted = false;
+        try {
+            batch.closed.get(config.window().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // the window is over
+        } catch (InterruptedException e) {
+            // write what has been collected so far. The flag is restored after the write,
+            // JDBC and Redis I/O on an interrupted virtual thread fails and can break the pooled connection
+            interrupted = true;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e); // closed is only ever completed normally
+        }
+
+        // closing the batch under the map's lock for the key, so no update can join it anymore
+        openBatches.remove(messageId, batch);
+        writes.increment();
+        batchSizes.record(batch.size);
+        log.debug("Coalesced {} updates of messageID {}", batch.size, messageId);
+
+        try {
+            batch.result.complete(delegate.updateMessage(messageId, batch.latest));
+        } catch (RuntimeException | Error e) {
+            batch.result.completeExceptionally(e); // every update of the batch fails with it
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO saveMessage(@NonNull MessageLogContentDTO dto) {
+        return delegate.saveMessage(dto);
+    }
+
+    @Override
+    @NotNull
+    public List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos) {
+        return delegate.saveMessages(dtos);
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO getMessage(@NonNull Long messageId) {
+        return delegate.getMessage(messageId);
+    }
+
+    @Override
+    public MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto) {
+        flushOpenBatch(dto.getMessageId());
+        return delegate.upsertMessage(dto);
+    }
+
+    @Override
+    public void deleteMessage(@NonNull Long messageId) {
+        flushOpenBatch(messageId);
+        delegate.deleteMessage(messageId);
+    }
+
+    @Override
+    public boolean savesBuffered() {
+        return delegate.savesBuffered();
+    }
+
+    // cuts the window of the message's open batch short and waits for its write, whether it succeeds or not
+    private void flushOpenBatch(Long messageId) {
+
+        Batch batch = openBatches.get(messageId);
+        if (batch == null)
+            return;
+
+        batch.closed.complete(null);
+        batch.result.handle((result, failure) -> null).join();
+    }
+
+    // fields are only changed inside openBatches.compute, and read by the leader after it removed the batch
+    private static final class Batch {
+
+        private final CompletableFuture<Void> closed = new CompletableFuture<>(); // ends the window early
+        private final CompletableFuture<MessageLogContentDTO> result = new CompletableFuture<>();
+        private MessageLogContentDTO latest;
+        private int size;
+    }
+}
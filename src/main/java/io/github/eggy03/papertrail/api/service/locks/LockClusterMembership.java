@@ -0,0 +1,142 @@
+package io.github.eggy03.papertrail.api.service.locks;
+
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/*
+Keeps track of how many API nodes share the Redis instance, so that the striped lock strategy
+can skip the distributed lock while only a single node is alive.
+
+Every node writes its ID into a sorted set with the heartbeat time as score and prunes entries
+whose heartbeat is older than NODE_TIMEOUT. The heartbeat time is the clock of Redis, not of the node,
+so nodes with skewed clocks can not prune each other. The node count is cached locally,
+so lock operations never pay a Redis round-trip to read it.
+
+Until the first heartbeat succeeds the node assumes it is not alone.
+
+A node that (re)joins is only seen by the others after their next heartbeat, and until then they skip the
+distributed lock. So the joining node reports itself as not ready and holds its own lock operations back
+until JOIN_DELAY after its heartbeat added it, which is more than one heartbeat of every other node.
+Lock operations wait for that at most message.locks.striped.join-timeout and are then rejected,
+so a node that can not reach Redis, or whose entry was pruned, does not hang them forever.
+*/
+@ApplicationScoped
+@IfBuildProperty(name = "message.locks.enabled", stringValue = "true")
+@IfBuildProperty(name = "message.locks.strategy", stringValue = "striped")
+@Slf4j
+public class LockClusterMembership {
+
+    private static final String MEMBERSHIP_KEY = "papertrail:locks:nodes";
+    private static final Duration NODE_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(10); // keep in sync with @Scheduled
+    private static final Duration JOIN_DELAY = HEARTBEAT_INTERVAL.multipliedBy(2);
+
+    // KEYS: membership set. ARGV: node ID, timeout in millis. Returns {1 if the node was (re)added, alive nodes}
+    private static final String HEARTBEAT_SCRIPT = """
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local added = redis.call('ZADD', KEYS[1], now, ARGV[1])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. (now - tonumber(ARGV[2])))
+            return {added, redis.call('ZCARD', KEYS[1])}
+            """;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RedissonClient redissonClient;
+    private final LongSupplier nanoTime;
+
+    private volatile int aliveNodes = Integer.MAX_VALUE;
+    private volatile long joinedAtNanos = Long.MAX_VALUE; // when the last heartbeat that added this node ran
+
+    @Inject
+    public LockClusterMembership(RedissonClient redissonClient) {
+        this(redissonClient, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime source of {@link System#nanoTime()}, replaceable so that the join delay can be tested
+     */
+    public LockClusterMembership(RedissonClient redissonClient, LongSupplier nanoTime) {
+        this.redissonClient = redissonClient;
+        this.nanoTime = nanoTime;
+    }
+
+    public boolean isClustered() {
+        return aliveNodes > 1;
+    }
+
+    /**
+     * @return whether every other node has had a heartbeat since this node joined, and so takes the distributed lock
+     */
+    public boolean isSeenByAllNodes() {
+        long joinedAt = joinedAtNanos;
+        return joinedAt != Long.MAX_VALUE && nanoTime.getAsLong() - joinedAt >= JOIN_DELAY.toNanos();
+    }
+
+    /**
+     * Parks the caller until {@link #isSeenByAllNodes()}, for at most {@code timeout}. Returns right away once the node has settled.
+     *
+     * @return false if the node was still not seen by all nodes when the timeout ran out
+     */
+    public boolean awaitSeenByAllNodes(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (!isSeenByAllNodes()) {
+                if (System.nanoTime() - deadline >= 0)
+                    return false;
+                Thread.sleep(100);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to join the lock cluster", e);
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        heartbeat();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        redissonClient.getScoredSortedSet(MEMBERSHIP_KEY, StringCodec.INSTANCE).remove(nodeId);
+    }
+
+    @Scheduled(every = "10s", delayed = "10s")
+    public void heartbeat() {
+
+        try {
+            List<Long> result = redissonClient.getScript(StringCodec.INSTANCE).eval(
+                    RScript.Mode.READ_WRITE, HEARTBEAT_SCRIPT, RScript.ReturnType.MULTI,
+                    List.of(MEMBERSHIP_KEY), nodeId, String.valueOf(NODE_TIMEOUT.toMillis()));
+
+            if (result.get(0) == 1) {
+                // first heartbeat, or this node was pruned while it could not reach Redis
+                joinedAtNanos = nanoTime.getAsLong();
+                log.info("{}Joined the lock cluster, lock operations wait {} for the other nodes to see this one{}", AnsiColor.GREEN, JOIN_DELAY, AnsiColor.RESET);
+            }
+
+            int nodes = result.get(1).intValue();
+            if (nodes != aliveNodes)
+                log.info("{}Lock cluster membership changed to {} node(s){}", AnsiColor.GREEN, nodes, AnsiColor.RESET);
+            aliveNodes = nodes;
+        } catch (RuntimeException e) {
+            // fall back to the safe assumption until Redis is reachable again
+            aliveNodes = Integer.MAX_VALUE;
+            log.warn(AnsiColor.YELLOW + "Lock cluster heartbeat failed, assuming multiple nodes" + AnsiColor.RESET, e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package io.github.eggy03.papertrail.api.service.locks;
+
+import io.github.eggy03.papertrail.api.configuration.MessageLocksConfig;
+import io.github.eggy03.papertrail.api.dto.LockContentionDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+Finds the message IDs whose locks are contended the most on this node, fed by LockMetrics.
+
+Two things are tracked:
+1) How many operations of this node are waiting for the lock of each message right now.
+   This is exact, but only holds the IDs with waiters, so it stays as small as the number of in-flight operations.
+   The number of waiters an operation finds when it starts waiting (itself included) is recorded as
+   papertrail.lock.queue, the total as papertrail.lock.waiting.
+
+2) The message IDs that are locked most often, with their wait and hold times, in a Space-Saving table
+   of message.locks.contention.top-k entries. When the table is full, a new ID replaces the entry with the smallest count
+   and inherits that count as its error, so every ID locked more often than acquisitions / top-k is guaranteed to be in it,
+   and no count is overestimated by more than its error. Wait and hold stats start when the ID enters the table.
+   The most waiters seen for an ID is taken whenever one of them acquires the lock, when the queue is still at its length.
+
+Per message stats are served by the admin endpoint only. As meter tags the message IDs would make a new time series
+for every hot message.
+
+Developer Notes
+
+The stats are per node. Waiters on other nodes are not visible here: the fair lock queue lives in Redis,
+and reading its length on every lock would cost a Redis round-trip per operation.
+The table is a Stream-Summary: entries with the same count share a bucket, and the buckets form a list ordered by count.
+Counting an acquisition moves the entry to the next bucket and an eviction takes any entry of the first one,
+so both are O(1) and the table lock is only held briefly, once when the lock is acquired and once when it is released.
+*/
+@ApplicationScoped
+public class LockContentionTracker {
+
+    private final int capacity;
+    private final Map<Long, Integer> waiting = new ConcurrentHashMap<>();
+    private final AtomicInteger totalWaiting = new AtomicInteger();
+    private final DistributionSummary queueLengths;
+
+    private final ReentrantLock tableLock = new ReentrantLock();
+    private final Map<Long, Entry> table = new HashMap<>();
+    private Bucket smallest; // buckets ordered by count, guarded by tableLock
+    private Bucket largest;
+
+    public LockContentionTracker(MessageLocksConfig config, MeterRegistry registry) {
+
+        this.capacity = Math.max(1, config.contention().topK());
+        this.queueLengths = DistributionSummary.builder("papertrail.lock.queue")
+                .description("Operations of this node waiting for the same message lock when an operation starts waiting, itself included")
+                .register(registry);
+        Gauge.builder("papertrail.lock.waiting", totalWaiting, AtomicInteger::get)
+                .description("Operations of this node waiting for a message lock")
+                .register(registry);
+    }
+
+    void waiting(Long messageId) {
+        totalWaiting.incrementAndGet();
+        queueLengths.record(waiting.merge(messageId, 1, Integer::sum));
+    }
+
+    // the lock was acquired, or the attempt failed (waitNanos < 0)
+    void stoppedWaiting(Long messageId, long waitNanos) {
+
+        totalWaiting.decrementAndGet();
+        int[] queueLength = new int[1];
+        waiting.computeIfPresent(messageId, (id, count) -> {
+            queueLength[0] = count;
+            return count == 1 ? null : count - 1;
+        });
+
+        if (waitNanos < 0)
+            return;
+
+        tableLock.lock();
+        try {
+            Entry entry = table.get(messageId);
+            if (entry == null)
+                entry = add(messageId);
+            else
+                increment(entry);
+
+            entry.trackedAcquisitions++;
+            entry.maxWaiting = Math.max(entry.maxWaiting, queueLength[0]);
+            entry.waitNanos += waitNanos;
+            entry.maxWaitNanos = Math.max(entry.maxWaitNanos, waitNanos);
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    void released(Long messageId, long holdNanos) {
+
+        tableLock.lock();
+        try {
+            Entry entry = table.get(messageId); // may have been evicted while held
+            if (entry != null) {
+                entry.holds++;
+                entry.holdNanos += holdNanos;
+                entry.maxHoldNanos = Math.max(entry.maxHoldNanos, holdNanos);
+            }
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    /**
+     * @return the tracked message IDs, most frequently locked first
+     */
+    public List<LockContentionDTO> hottest(int limit) {
+
+        List<LockContentionDTO> hottest = new ArrayList<>();
+        tableLock.lock();
+        try {
+            for (Bucket bucket = largest; bucket != null; bucket = bucket.previous)
+                for (Entry entry = bucket.first; entry != null; entry = entry.next) {
+                    if (hottest.size() == limit)
+                        return hottest;
+                    hottest.add(entry.toDTO(currentlyWaiting(entry.messageId)));
+                }
+            return hottest;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    /**
+     * Clears the table, so that the next report only covers what happened since. Waiters are not reset.
+     */
+    public void reset() {
+
+        tableLock.lock();
+        try {
+            table.clear();
+            smallest = null;
+            largest = null;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private int currentlyWaiting(Long messageId) {
+        return waiting.getOrDefault(messageId, 0);
+    }
+
+    // called with tableLock held, counts the first acquisition of an ID that is not in the table
+    private Entry add(Long messageId) {
+
+        long inherited = 0;
+        if (table.size() >= capacity) {
+            Entry evicted = smallest.first;
+            table.remove(evicted.messageId);
+            inherited = smallest.count;
+            unlink(evicted);
+        }
+
+        Entry entry = new Entry(messageId);
+        entry.error = inherited;
+        table.put(messageId, entry);
+        link(entry, inherited + 1);
+        return entry;
+    }
+
+    // called with tableLock held, moves the entry to the bucket of the next count
+    private void increment(Entry entry) {
+
+        Bucket from = entry.bucket;
+        Bucket to = from.next;
+        if (to == null || to.count != from.count + 1)
+            to = insertBucket(from.count + 1, from, to);
+
+        unlink(entry);
+        to.add(entry);
+    }
+
+    // called with tableLock held. count is at most one more than the smallest count, so this walks at most two buckets
+    private void link(Entry entry, long count) {
+
+        Bucket previous = null;
+        Bucket bucket = smallest;
+        while (bucket != null && bucket.count < count) {
+            previous = bucket;
+            bucket = bucket.next;
+        }
+        if (bucket == null || bucket.count != count)
+            bucket = insertBucket(count, previous, bucket);
+
+        bucket.add(entry);
+    }
+
+    // called with tableLock held, removes the entry from its bucket and drops the bucket if that was its last entry
+    private void unlink(Entry entry) {
+
+        Bucket bucket = entry.bucket;
+        bucket.remove(entry);
+        if (bucket.first != null)
+            return;
+
+        if (bucket.previous != null)
+            bucket.previous.next = bucket.next;
+        else
+            smallest = bucket.next;
+        if (bucket.next != null)
+            bucket.next.previous = bucket.previous;
+        else
+            largest = bucket.previous;
+    }
+
+    // called with tableLock held
+    private Bucket insertBucket(long count, Bucket previous, Bucket next) {
+
+        Bucket bucket = new Bucket(count);
+        bucket.previous = previous;
+        bucket.next = next;
+        if (previous != null)
+            previous.next = bucket;
+        else
+            smallest = bucket;
+        if (next != null)
+            next.previous = bucket;
+        else
+            largest = bucket;
+        return bucket;
+    }
+
+    // the entries whose Space-Saving count is the same
+    private static final class Bucket {
+
+        private final long count; // includes the error
+        private Bucket previous;
+        private Bucket next;
+        private Entry first;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+
+        private void add(Entry entry) {
+            entry.bucket = this;
+            entry.previous = null;
+            entry.next = first;
+            if (first != null)
+                first.previous = entry;
+            first = entry;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.previous != null)
+                entry.previous.next = entry.next;
+            else
+                first = entry.next;
+            if (entry.next != null)
+                entry.next.previous = entry.previous;
+            entry.bucket = null;
+            entry.previous = null;
+            entry.next = null;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Long messageId;
+        private Bucket bucket;
+        private Entry previous; // within the bucket
+        private Entry next;
+
+        private long error;
+        private long trackedAcquisitions; // acquisitions since the entry was created, for the mean wait
+        private int maxWaiting;
+        private long waitNanos;
+        private long maxWaitNanos;
+        private long holds;
+        private long holdNanos;
+        private long maxHoldNanos;
+
+        private Entry(Long messageId) {
+            this.messageId = messageId;
+        }
+
+        private LockContentionDTO toDTO(int waitingNow) {
+            return new LockContentionDTO(
+                    messageId,
+                    bucket.count,
+                    error,
+                    waitingNow,
+                    Math.max(maxWaiting, waitingNow), // a queue that is still growing has not been recorded yet
+                    trackedAcquisitions == 0 ? 0 : millis(waitNanos) / trackedAcquisitions,
+                    millis(maxWaitNanos),
+                    holds == 0 ? 0 : millis(holdNanos) / holds,
+                    millis(maxHoldNanos)
+            );
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package io.github.eggy03.papertrail.api.service.locks;
 
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
 import io.github.eggy03.papertrail.api.service.MessageLogContentService;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.common.constraint.NotNull;
@@ -8,12 +10,16 @@ import jakarta.enterprise.context.ApplicationScoped;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
+import java.util.List;
+
 @ApplicationScoped
 @IfBuildProperty(name = "message.locks.enabled", stringValue = "false", enableIfMissing = true)
+@IfBuildProperty(name = "message.write-behind.enabled", stringValue = "false", enableIfMissing = true)
 @RequiredArgsConstructor
 public class LockDisabledMessageContentOperationImpl implements MessageLogContentOperation {
 
     private final MessageLogContentService delegate;
+    private final MessageSaveAwaiter saveAwaiter;
 
     @Override
     @NotNull
@@ -21,10 +27,16 @@ public class LockDisabledMessageContentOperationImpl implements MessageLogConten
         return delegate.saveMessage(dto);
     }
 
+    @Override
+    @NotNull
+    public List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos) {
+        return delegate.saveMessages(dtos);
+    }
+
     @Override
     @NotNull
     public MessageLogContentDTO getMessage(@NonNull Long messageId) {
-        return delegate.getMessage(messageId);
+        return saveAwaiter.getMessage(messageId);
     }
 
     @Override
@@ -33,8 +45,18 @@ public class LockDisabledMessageContentOperationImpl implements MessageLogConten
         return delegate.updateMessage(messageId, dto);
     }
 
+    @Override
+    public MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto) {
+        return delegate.upsertMessage(dto);
+    }
+
     @Override
     public void deleteMessage(@NonNull Long messageId) {
         delegate.deleteMessage(messageId);
     }
+
+    @Override
+    public boolean savesBuffered() {
+        return false;
+    }
 }
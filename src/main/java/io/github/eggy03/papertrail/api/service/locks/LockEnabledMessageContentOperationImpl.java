@@ -1,7 +1,10 @@
 package io.github.eggy03.papertrail.api.service.locks;
 
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
 import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.common.constraint.NotNull;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -11,11 +14,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 
+import java.util.List;
+import java.util.Objects;
+
 /*
 Have a centralized locking mechanism to avoid concurrency issues across scaled instances.
 
-All operations (save, update, delete, view) for the same messageId are
-serialized so that only one operation executes at a time. This protects
+All mutating operations (save, update, delete) for the same messageId are
+serialized so that only one operation executes at a time. Views are lock-free (see getMessage). This protects
 against race conditions caused by parallel processing, transient service
 degradation, or timing variance between nodes.
 
@@ -50,28 +56,71 @@ for the following reasons:
 */
 @ApplicationScoped
 @IfBuildProperty(name = "message.locks.enabled", stringValue = "true")
+@IfBuildProperty(name = "message.locks.strategy", stringValue = "fair", enableIfMissing = true)
+@IfBuildProperty(name = "message.write-behind.enabled", stringValue = "false", enableIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class LockEnabledMessageContentOperationImpl implements MessageLogContentOperation {
 
     private final RedissonClient redissonClient;
     private final MessageLogContentService delegate;
+    private final MessageSaveAwaiter saveAwaiter;
+    private final LockMetrics lockMetrics;
 
     @NotNull
     public MessageLogContentDTO saveMessage(@NonNull MessageLogContentDTO dto) {
 
         RLock rlock = redissonClient.getFairLock(dto.getMessageId().toString());
-        rlock.lock();
+        Timer.Sample hold = lockMetrics.acquire("SAVE", dto.getMessageId(), rlock::lock);
         log.debug("Acquired SAVE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
 
         try {
             return delegate.saveMessage(dto);
         } finally {
             rlock.unlock();
+            lockMetrics.released("SAVE", dto.getMessageId(), hold);
             log.debug("Released SAVE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
         }
     }
 
+    /*
+    Batch saves take the same per-message fair locks as single saves, combined into one multi lock,
+    so a batched save can not interleave with an update/upsert/delete of one of its messages.
+    Views do not take the lock (see getMessage). A view of a recent message that arrives before the batch is committed
+    polls for it through MessageSaveAwaiter instead.
+
+    IDs are de-duplicated and sorted before locking so that two overlapping batches always
+    acquire their locks in the same order and can not deadlock each other.
+    Items without a messageId are not locked, they will be rejected as INVALID by the service anyway.
+    */
+    @NotNull
+    public List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos) {
+
+        RLock[] rlocks = dtos.stream()
+                .filter(Objects::nonNull)
+                .map(MessageLogContentDTO::getMessageId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(messageId -> redissonClient.getFairLock(messageId.toString()))
+                .toArray(RLock[]::new);
+
+        if (rlocks.length == 0)
+            return delegate.saveMessages(dtos);
+
+        RLock multiLock = redissonClient.getMultiLock(rlocks);
+        Timer.Sample hold = lockMetrics.acquire("BATCH SAVE", null, multiLock::lock);
+        log.debug("Acquired BATCH SAVE lock for {} messageIDs", rlocks.length);
+
+        try {
+            return delegate.saveMessages(dtos);
+        } finally {
+            multiLock.unlock();
+            lockMetrics.released("BATCH SAVE", null, hold);
+            log.debug("Released BATCH SAVE lock for {} messageIDs", rlocks.length);
+        }
+    }
+
     /*
     Initially, view operations were not locked because only mutating operations
     (save, update, delete) were expected to require synchronization.
@@ -89,53 +138,70 @@ public class LockEnabledMessageContentOperationImpl implements MessageLogContent
     the update is never scheduled when view returns 404. The save eventually
     completes, but the intended update is skipped.
 
-    Under rapid save/update sequences, this creates race conditions and
-    inconsistent state.
+    For a while, view operations acquired the same Redisson lock to maintain ordering,
+    which made the most frequent operation pay the full distributed lock cost.
 
-    For this reason, view operations now acquire the same Redisson lock to
-    maintain ordering.
+    Views are lock-free again. The startup race is now covered by MessageSaveAwaiter, which keeps polling
+    for a bounded time (message.view.wait-for-save) when the message has not been saved yet.
+    Updates and deletes still take the lock, and are single statements that can not lose a concurrent write.
     */
     @NotNull
     public MessageLogContentDTO getMessage(@NonNull Long messageId) {
+        return saveAwaiter.getMessage(messageId);
+    }
 
-        RLock rlock = redissonClient.getFairLock(messageId.toString());
-        rlock.lock();
-        log.debug("Acquired VIEW lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
+    @NotNull
+    public MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+
+        RLock rlock = redissonClient.getFairLock(dto.getMessageId().toString());
+        Timer.Sample hold = lockMetrics.acquire("UPDATE", dto.getMessageId(), rlock::lock);
+        log.debug("Acquired UPDATE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
 
         try {
-            return delegate.getMessage(messageId);
+            return delegate.updateMessage(messageId, dto);
         } finally {
             rlock.unlock();
-            log.debug("Released VIEW lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
+            lockMetrics.released("UPDATE", dto.getMessageId(), hold);
+            log.debug("Released UPDATE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
         }
     }
 
+    /*
+    The upsert is a single atomic statement and would be safe without the lock.
+    It takes it anyway so that it stays ordered with saves, updates and deletes of the same message.
+    */
     @NotNull
-    public MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+    public MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto) {
 
         RLock rlock = redissonClient.getFairLock(dto.getMessageId().toString());
-        rlock.lock();
-        log.debug("Acquired UPDATE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
+        Timer.Sample hold = lockMetrics.acquire("UPSERT", dto.getMessageId(), rlock::lock);
+        log.debug("Acquired UPSERT lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
 
         try {
-            return delegate.updateMessage(messageId, dto);
+            return delegate.upsertMessage(dto);
         } finally {
             rlock.unlock();
-            log.debug("Released UPDATE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
+            lockMetrics.released("UPSERT", dto.getMessageId(), hold);
+            log.debug("Released UPSERT lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
         }
     }
 
     public void deleteMessage(@NonNull Long messageId) {
 
         RLock rlock = redissonClient.getFairLock(String.valueOf(messageId));
-        rlock.lock();
+        Timer.Sample hold = lockMetrics.acquire("DELETE", messageId, rlock::lock);
         log.debug("Acquired DELETE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
 
         try {
             delegate.deleteMessage(messageId);
         } finally {
             rlock.unlock();
+            lockMetrics.released("DELETE", messageId, hold);
             log.debug("Released DELETE lock for messageID {} with active lock count {}", rlock.getName(), rlock.getHoldCount());
         }
     }
+
+    public boolean savesBuffered() {
+        return false;
+    }
 }
@@ -0,0 +1,78 @@
+package io.github.eggy03.papertrail.api.service.locks;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+
+/*
+Times the locks of the MessageLogContentOperation implementations, split into
+- papertrail.lock.wait: from asking for the lock until it was acquired, which is time spent in Redis and behind other holders
+- papertrail.lock.hold: from acquiring the lock until releasing it, which is the time the operation itself took
+both tagged with the operation (save, batch_save, update, upsert, delete).
+
+A wait that keeps growing while the hold stays flat means contention on the same messages or a slow Redis,
+a growing hold means the database got slower. Which messages are contended is tracked by LockContentionTracker.
+Batch saves lock many messages at once and are passed with a null messageId, they are only timed.
+*/
+@ApplicationScoped
+@RequiredArgsConstructor
+public class LockMetrics {
+
+    private final MeterRegistry registry;
+    private final LockContentionTracker tracker;
+
+    /**
+     * Runs the lock call between {@link #startWait} and {@link #acquired}.
+     *
+     * @return the hold sample to pass to {@link #released}
+     */
+    public Timer.Sample acquire(String operation, Long messageId, Runnable lock) {
+
+        Timer.Sample wait = startWait(messageId);
+        try {
+            lock.run();
+        } catch (RuntimeException e) {
+            failed(messageId);
+            throw e;
+        }
+        return acquired(operation, messageId, wait);
+    }
+
+    public Timer.Sample startWait(Long messageId) {
+        if (messageId != null)
+            tracker.waiting(messageId);
+        return Timer.start(registry);
+    }
+
+    /**
+     * Stops the wait sample and starts the hold sample of the operation.
+     */
+    public Timer.Sample acquired(String operation, Long messageId, Timer.Sample wait) {
+
+        long waitNanos = wait.stop(timer("papertrail.lock.wait", "Time spent waiting for a message lock", operation));
+        if (messageId != null)
+            tracker.stoppedWaiting(messageId, waitNanos);
+        return Timer.start(registry);
+    }
+
+    // the lock call threw, the operation is no longer waiting
+    public void failed(Long messageId) {
+        if (messageId != null)
+            tracker.stoppedWaiting(messageId, -1);
+    }
+
+    public void released(String operation, Long messageId, Timer.Sample hold) {
+
+        long holdNanos = hold.stop(timer("papertrail.lock.hold", "Time a message lock was held", operation));
+        if (messageId != null)
+            tracker.released(messageId, holdNanos);
+    }
+
+    private Timer timer(String name, String description, String operation) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("operation", operation.toLowerCase().replace(' ', '_'))
+                .register(registry);
+    }
+}
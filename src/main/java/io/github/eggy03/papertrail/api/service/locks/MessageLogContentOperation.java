@@ -1,12 +1,16 @@
 package io.github.eggy03.papertrail.api.service.locks;
 
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
 import lombok.NonNull;
 
+import java.util.List;
+
 /**
  * This interface has a signature matching {@link io.github.eggy03.papertrail.api.service.MessageLogContentService}
  * Implementations of this interface will usually wrap the above described service methods in redisson locks
- * or without it.
+ * or without it, or buffer the saves for write-behind.
  * <p>
  * Quarkus CDI will choose the implementation based on profiles
  */
@@ -14,9 +18,18 @@ public interface MessageLogContentOperation {
 
     MessageLogContentDTO saveMessage(@NonNull MessageLogContentDTO dto);
 
+    List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos);
+
     MessageLogContentDTO getMessage(@NonNull Long messageId);
 
     MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO dto);
 
+    MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto);
+
     void deleteMessage(@NonNull Long messageId);
+
+    /**
+     * Whether {@link #saveMessage} only buffers the message, so that it is written after the call has returned.
+     */
+    boolean savesBuffered();
 }
@@ -0,0 +1,66 @@
+package io.github.eggy03.papertrail.api.service.locks;
+
+import io.github.eggy03.papertrail.api.configuration.MessageViewConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+
+/*
+Lock-free replacement for locking the view operation.
+
+Views used to take the same lock as the mutations, so that a view arriving just before its save
+(for example while the save still waits on Redisson's lazy connection setup) would wait for the save
+instead of returning 404. That made every view pay the full distributed lock cost.
+
+Views now read without a lock. Only when the message is not found, message.view.wait-for-save is set,
+and the message was created within message.view.wait-for-save-max-age (going by its Snowflake ID),
+the view keeps polling for a bounded time before giving up with 404. Views of older messages
+that are not found, which are most of them, return 404 right away instead of paying the wait.
+Updates and deletes are not affected, they are single statements that can not lose a concurrent write
+(see MessageLogContentRepository).
+*/
+@ApplicationScoped
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSaveAwaiter {
+
+    private final MessageLogContentService delegate;
+    private final MessageViewConfig config;
+
+    public MessageLogContentDTO getMessage(@NonNull Long messageId) {
+
+        long deadline = System.nanoTime() + (isRecent(messageId) ? config.waitForSave().toNanos() : 0);
+
+        while (true) {
+            try {
+                return delegate.getMessage(messageId);
+            } catch (MessageNotFoundException e) {
+                if (System.nanoTime() + config.pollInterval().toNanos() > deadline)
+                    throw e;
+
+                log.debug("Message with ID={} not saved yet, polling again in {}", messageId, config.pollInterval());
+                sleep();
+            }
+        }
+    }
+
+    private boolean isRecent(Long messageId) {
+        return Snowflake.toInstant(messageId).isAfter(Instant.now().minus(config.waitForSaveMaxAge()));
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(config.pollInterval());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageNotFoundException("Interrupted while waiting for the message to be saved", e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.eggy03.papertrail.api.service.locks;
+
+import io.github.eggy03.papertrail.api.configuration.MessageLocksConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
+import io.github.eggy03.papertrail.api.exceptions.LockClusterJoinException;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.common.constraint.NotNull;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+Two level alternative to the per-operation Redisson fair lock of LockEnabledMessageContentOperationImpl.
+
+1) Operations on the same messageId are first serialized inside the node with a striped in-JVM lock table.
+   Concurrent operations on the same message coming into one node therefore queue up locally
+   and only one of them at a time talks to Redis, instead of all of them queueing up in Redis.
+
+2) Only while holding the stripe, the distributed lock is taken. With message.locks.striped.distributed=auto,
+   the default, it is skipped while this is the only alive node
+   (see LockClusterMembership, a joining node waits until every other node has seen it,
+   and rejects the operation with 503 if that takes longer than message.locks.striped.join-timeout).
+
+The distributed lock defaults to a non-fair Redisson lock, which costs fewer round-trips than a fair lock and
+does not maintain the queue and timeout keys. Since same-node waiters are already ordered by the stripe,
+fairness only matters between nodes. A fair lock can be configured instead, optionally with a lease.
+
+Different messageIds can share a stripe, so the stripe count should be well above the number of concurrent requests.
+*/
+@ApplicationScoped
+@IfBuildProperty(name = "message.locks.enabled", stringValue = "true")
+@IfBuildProperty(name = "message.locks.strategy", stringValue = "striped")
+@IfBuildProperty(name = "message.write-behind.enabled", stringValue = "false", enableIfMissing = true)
+@Slf4j
+public class StripedLockMessageContentOperationImpl implements MessageLogContentOperation {
+
+    private final RedissonClient redissonClient;
+    private final LockClusterMembership membership;
+    private final MessageLogContentService delegate;
+    private final MessageSaveAwaiter saveAwaiter;
+    private final MessageLocksConfig.Striped config;
+    private final LockMetrics lockMetrics;
+
+    private final ReentrantLock[] stripes;
+
+    public StripedLockMessageContentOperationImpl(RedissonClient redissonClient, LockClusterMembership membership,
+                                                  MessageLogContentService delegate, MessageSaveAwaiter saveAwaiter,
+                                                  MessageLocksConfig config, LockMetrics lockMetrics) {
+
+        this.redissonClient = redissonClient;
+        this.membership = membership;
+        this.delegate = delegate;
+        this.saveAwaiter = saveAwaiter;
+        this.config = config.striped();
+        this.lockMetrics = lockMetrics;
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, this.config.stripes() - 1)) << 1;
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO saveMessage(@NonNull MessageLogContentDTO dto) {
+        return withLock("SAVE", dto.getMessageId(), () -> delegate.saveMessage(dto));
+    }
+
+    @Override
+    @NotNull
+    public List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos) {
+
+        List<Long> messageIds = dtos.stream()
+                .filter(Objects::nonNull)
+                .map(MessageLogContentDTO::getMessageId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toList();
+
+        // stripes are locked in index order so that overlapping batches can not deadlock each other
+        List<ReentrantLock> batchStripes = messageIds.stream()
+                .mapToInt(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .mapToObj(index -> stripes[index])
+                .toList();
+
+        awaitClusterJoin();
+        Timer.Sample wait = lockMetrics.startWait(null);
+        List<ReentrantLock> acquired = new ArrayList<>(batchStripes.size());
+        try {
+            for (ReentrantLock stripe : batchStripes) {
+                stripe.lock();
+                acquired.add(stripe);
+            }
+
+            if (messageIds.isEmpty() || !needsDistributedLock())
+                return timed("BATCH SAVE", null, wait, () -> delegate.saveMessages(dtos));
+
+            RLock multiLock = redissonClient.getMultiLock(messageIds.stream()
+                    .map(messageId -> distributedLock(messageId.toString()))
+                    .toArray(RLock[]::new));
+
+            try {
+                lockDistributed(multiLock);
+            } catch (RuntimeException e) {
+                lockMetrics.failed(null);
+                throw e;
+            }
+            log.debug("Acquired BATCH SAVE lock for {} messageIDs", messageIds.size());
+            try {
+                return timed("BATCH SAVE", null, wait, () -> delegate.saveMessages(dtos));
+            } finally {
+                unlockDistributed(multiLock, "BATCH SAVE lock for " + messageIds.size() + " messageIDs");
+                log.debug("Released BATCH SAVE lock for {} messageIDs", messageIds.size());
+            }
+        } finally {
+            acquired.reversed().forEach(ReentrantLock::unlock);
+        }
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO getMessage(@NonNull Long messageId) {
+        return saveAwaiter.getMessage(messageId); // lock-free, see LockEnabledMessageContentOperationImpl
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+        return withLock("UPDATE", dto.getMessageId(), () -> delegate.updateMessage(messageId, dto));
+    }
+
+    @Override
+    public MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto) {
+        return withLock("UPSERT", dto.getMessageId(), () -> delegate.upsertMessage(dto));
+    }
+
+    @Override
+    public void deleteMessage(@NonNull Long messageId) {
+        withLock("DELETE", messageId, () -> {
+            delegate.deleteMessage(messageId);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean savesBuffered() {
+        return false;
+    }
+
+    private <T> T withLock(String operation, Long messageId, Supplier<T> action) {
+
+        awaitClusterJoin();
+        Timer.Sample wait = lockMetrics.startWait(messageId);
+        ReentrantLock stripe = stripes[stripeIndex(messageId)];
+        stripe.lock();
+        try {
+            if (!needsDistributedLock())
+                return timed(operation, messageId, wait, action);
+
+            RLock rlock = distributedLock(messageId.toString());
+            try {
+                lockDistributed(rlock);
+            } catch (RuntimeException e) {
+                lockMetrics.failed(messageId);
+                throw e;
+            }
+            log.debug("Acquired {} lock for messageID {}", operation, messageId);
+            try {
+                return timed(operation, messageId, wait, action);
+            } finally {
+                unlockDistributed(rlock, operation + " lock for messageID " + messageId);
+                log.debug("Released {} lock for messageID {}", operation, messageId);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    // the wait covers the stripe and the distributed lock, the hold only the operation
+    private <T> T timed(String operation, Long messageId, Timer.Sample wait, Supplier<T> action) {
+
+        Timer.Sample hold = lockMetrics.acquired(operation, messageId, wait);
+        try {
+            return action.get();
+        } finally {
+            lockMetrics.released(operation, messageId, hold);
+        }
+    }
+
+    private int stripeIndex(long messageId) {
+        int hash = Long.hashCode(messageId);
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    // until the other nodes have seen this one, they skip the distributed lock in auto mode
+    private void awaitClusterJoin() {
+        if (config.distributed() == MessageLocksConfig.DistributedMode.AUTO && !membership.awaitSeenByAllNodes(config.joinTimeout()))
+            throw new LockClusterJoinException("This node has not joined the lock cluster yet");
+    }
+
+    private boolean needsDistributedLock() {
+        return switch (config.distributed()) {
+            case ALWAYS -> true;
+            case NEVER -> false;
+            case AUTO -> membership.isClustered();
+        };
+    }
+
+    private RLock distributedLock(String name) {
+        return switch (config.distributedLockType()) {
+            case FAIR -> redissonClient.getFairLock(name);
+            case NON_FAIR -> redissonClient.getLock(name);
+        };
+    }
+
+    private void lockDistributed(RLock rlock) {
+        config.leaseTime().ifPresentOrElse(
+                lease -> rlock.lock(lease.toMillis(), TimeUnit.MILLISECONDS),
+                rlock::lock
+        );
+    }
+
+    // a multi lock has no name of its own, so the caller describes the lock for the log
+    private void unlockDistributed(RLock rlock, String description) {
+        try {
+            rlock.unlock();
+        } catch (IllegalMonitorStateException e) {
+            // the lease ran out before the operation finished, another node may have run concurrently
+            log.warn("Distributed {} expired before it was released, consider a longer message.locks.striped.lease-time", description);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.eggy03.papertrail.api.service.locks;
+
+import io.github.eggy03.papertrail.api.configuration.MessageLocksConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.service.writebehind.MessageLogContentWriteBuffer;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.constraint.NotNull;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/*
+Saves go into the write-behind buffer and are written to the DB asynchronously.
+Views, updates and deletes check the buffer first so that they behave as if the save had already been written.
+
+Batch saves skip the buffer because they are already written in one transaction.
+
+This mode does not take Redisson locks. The buffer only orders operations within a single node,
+so it is meant for single instance deployments or for setups where cross-node ordering of
+operations on the same message is not required. Building it with message.locks.enabled=true as well
+would silently drop the locks, so the application refuses to start instead.
+*/
+@ApplicationScoped
+@IfBuildProperty(name = "message.write-behind.enabled", stringValue = "true")
+@RequiredArgsConstructor
+public class WriteBehindMessageContentOperationImpl implements MessageLogContentOperation {
+
+    private final MessageLogContentWriteBuffer buffer;
+    private final MessageLogContentService delegate;
+    private final MessageSaveAwaiter saveAwaiter;
+    private final MessageLocksConfig locksConfig;
+
+    void onStart(@Observes StartupEvent event) {
+        if (locksConfig.enabled())
+            throw new IllegalStateException("message.write-behind.enabled=true takes no Redisson locks, "
+                    + "build with message.locks.enabled=false or message.write-behind.enabled=false");
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO saveMessage(@NonNull MessageLogContentDTO dto) {
+        buffer.enqueue(dto);
+        return dto;
+    }
+
+    @Override
+    @NotNull
+    public List<MessageLogContentBatchResultDTO> saveMessages(@NonNull List<MessageLogContentDTO> dtos) {
+        return delegate.saveMessages(dtos);
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO getMessage(@NonNull Long messageId) {
+        return buffer.findPending(messageId).orElseGet(() -> saveAwaiter.getMessage(messageId));
+    }
+
+    @Override
+    @NotNull
+    public MessageLogContentDTO updateMessage(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+
+        if (buffer.replacePending(messageId, dto))
+            return dto;
+
+        return delegate.updateMessage(messageId, dto);
+    }
+
+    // a save still waiting in the buffer counts as saved, so replacing it is an update.
+    // It is flushed as an upsert, so its content is written even if the buffered save turns out to be a duplicate
+    @Override
+    public MessageLogContentUpsertResultDTO upsertMessage(@NonNull MessageLogContentDTO dto) {
+
+        if (buffer.upsertPending(dto.getMessageId(), dto))
+            return new MessageLogContentUpsertResultDTO(dto, false);
+
+        return delegate.upsertMessage(dto);
+    }
+
+    @Override
+    public void deleteMessage(@NonNull Long messageId) {
+
+        if (!buffer.discardPending(messageId))
+            delegate.deleteMessage(messageId);
+    }
+
+    @Override
+    public boolean savesBuffered() {
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.eggy03.papertrail.api.service.retention;
+
+import io.github.eggy03.papertrail.api.configuration.MessageRetentionConfig;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository.Partition;
+import io.github.eggy03.papertrail.api.service.scheduling.ClusterJobLock;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Keeps the partitions of message_log_content_table in shape (see V2__partition_message_content.sql).
+
+Runs at startup and then every hour:
+- creates partitions of message.retention.partition.interval each, until message.retention.partition.ahead
+  into the future is covered. Each new partition starts where the last one ends.
+- in partition mode, drops every partition whose newest possible message is older than message.retention.max-age.
+  A partition is dropped only once all its messages have expired, so messages live up to one interval longer
+  than max-age.
+
+Only one node runs the job at a time, and only once an hour in the cluster (see ClusterJobLock).
+Both steps are idempotent, so a run cut short by a dying node is simply repeated by the next one.
+
+There is no default partition, so a save whose ID is past the last partition, or below the first one once the oldest
+partition has been dropped, fails with a MessageOutOfRangeException.
+The ahead window is there to ride out failures of this job. Every node reads how much of it is left after each
+scheduled run, whether or not it ran the job itself, reports that as papertrail.retention.partitions.ahead.seconds
+and logs a warning once less than one partition interval is left, so it can be alerted on before saves start to fail.
+Reads keep working either way, so the nodes stay in service. The first window is created by the migration itself.
+
+Developer Notes
+
+Dropped messages are not evicted from the near cache one by one, a partition holds a day of messages.
+Instead the message cache is configured with near-cache.caches."messageContent".max-key-age set to
+message.retention.max-age, which expires every entry by the time its message expires, and so before its partition is dropped.
+*/
+@ApplicationScoped
+@Slf4j
+public class MessageContentPartitionJob {
+
+    private static final Duration RUN_INTERVAL = Duration.ofHours(1); // keep in sync with @Scheduled
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmm").withZone(ZoneOffset.UTC);
+
+    private final MessageLogContentPartitionRepository repository;
+    private final MessageRetentionConfig config;
+    private final ClusterJobLock jobLock;
+
+    private final Counter droppedCounter;
+    private final AtomicLong partitionCount = new AtomicLong();
+    private final AtomicLong coveredUntil = new AtomicLong(); // epoch seconds
+
+    public MessageContentPartitionJob(MessageLogContentPartitionRepository repository, MessageRetentionConfig config, ClusterJobLock jobLock, MeterRegistry registry) {
+
+        this.repository = repository;
+        this.config = config;
+        this.jobLock = jobLock;
+
+        this.droppedCounter = Counter.builder("papertrail.retention.partitions.dropped")
+                .description("Expired message content partitions dropped")
+                .register(registry);
+        Gauge.builder("papertrail.retention.partitions", partitionCount, AtomicLong::get)
+                .description("Number of message content partitions")
+                .register(registry);
+        Gauge.builder("papertrail.retention.partitions.ahead.seconds", coveredUntil,
+                        until -> until.get() == 0 ? Double.NaN : until.get() - Instant.now().getEpochSecond())
+                .description("How far into the future message content partitions exist, NaN until they could be read")
+                .register(registry);
+    }
+
+    @Scheduled(every = "1h", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void maintainPartitions() {
+        if (!jobLock.runExclusively("message-partitions", RUN_INTERVAL, this::createAndDropPartitions))
+            readCoverage(); // another node maintains them, but the gauge should be right wherever it is scraped
+        warnIfRunningOut();
+    }
+
+    private void readCoverage() {
+        try {
+            repository.findPartitions().stream()
+                    .mapToLong(Partition::to)
+                    .filter(to -> to != Long.MAX_VALUE)
+                    .max()
+                    .ifPresent(to -> coveredUntil.set(Snowflake.toInstant(to).getEpochSecond()));
+        } catch (SQLException e) {
+            log.warn("{}Message Content Partition Service- Failed to read the message content partitions{}", AnsiColor.YELLOW, AnsiColor.RESET, e);
+        }
+    }
+
+    private void warnIfRunningOut() {
+
+        long until = coveredUntil.get();
+        if (until != 0 && Instant.ofEpochSecond(until).isBefore(Instant.now().plus(config.partition().interval())))
+            log.warn("{}Message Content Partition Service- Partitions only exist until {}, saving newer messages will fail{}",
+                    AnsiColor.YELLOW, Instant.ofEpochSecond(until), AnsiColor.RESET);
+    }
+
+    private void createAndDropPartitions() {
+        try {
+            List<Partition> partitions = repository.findPartitions();
+            partitions = createAhead(partitions);
+            if (config.enabled() && config.mode() == MessageRetentionConfig.Mode.PARTITION)
+                partitions = dropExpired(partitions);
+
+            partitionCount.set(partitions.size());
+        } catch (SQLException e) {
+            log.error("{}Message Content Partition Service- Partition maintenance failed, retrying in the next run{}", AnsiColor.RED, AnsiColor.RESET, e);
+        }
+    }
+
+    private List<Partition> createAhead(List<Partition> partitions) throws SQLException {
+
+        long intervalIds = Snowflake.lowestIdAt(Instant.ofEpochMilli(Snowflake.DISCORD_EPOCH_MILLI + config.partition().interval().toMillis()));
+        long target = Snowflake.lowestIdAt(Instant.now().plus(config.partition().ahead()));
+
+        long next = partitions.stream()
+                .mapToLong(Partition::to)
+                .filter(to -> to != Long.MAX_VALUE)
+                .max()
+                .orElseGet(() -> Snowflake.lowestIdAt(Instant.now()));
+
+        List<Partition> result = new ArrayList<>(partitions);
+        while (next < target) {
+            String name = "message_log_content_p" + NAME_FORMAT.format(Snowflake.toInstant(next));
+            repository.createPartition(name, next, next + intervalIds);
+            result.add(new Partition(name, next, next + intervalIds, false));
+            log.info("{}Message Content Partition Service- Created partition {}{}", AnsiColor.GREEN, name, AnsiColor.RESET);
+            next += intervalIds;
+        }
+
+        coveredUntil.set(Snowflake.toInstant(next).getEpochSecond());
+        return result;
+    }
+
+    private List<Partition> dropExpired(List<Partition> partitions) throws SQLException {
+
+        long cutoff = Snowflake.lowestIdAt(Instant.now().minus(config.maxAge()));
+
+        List<Partition> expired = partitions.stream()
+                .filter(partition -> partition.to() <= cutoff)
+                .sorted(Comparator.comparingLong(Partition::to))
+                .toList();
+
+        for (Partition partition : expired) {
+            repository.dropPartition(partition);
+            droppedCounter.increment();
+            log.info("{}Message Content Partition Service- Dropped expired partition {}{}", AnsiColor.GREEN, partition.name(), AnsiColor.RESET);
+        }
+
+        return partitions.stream()
+                .filter(partition -> !expired.contains(partition))
+                .toList();
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.eggy03.papertrail.api.service.retention;
+
+import io.github.eggy03.papertrail.api.configuration.MessageRetentionConfig;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository.Partition;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.service.scheduling.ClusterJobLock;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Row by row retention cleanup for message content, used when message.retention.mode=batch.
+By default, expired messages are removed by dropping partitions instead, see MessageContentPartitionJob.
+In that mode the job still deletes the expired messages of the legacy partition (the table that existed before
+partitioning), but none beyond it. The legacy partition can only be dropped once its newest message expired,
+so without this its oldest messages would be kept for up to twice message.retention.max-age.
+
+Every message.retention.interval the job deletes expired messages in batches of message.retention.batch-size,
+each batch in its own short transaction (see MessageLogContentRepository.deleteOlderThan), pausing
+message.retention.pause between batches. A run ends once a batch comes back short (nothing left to delete)
+or after message.retention.max-run-time. Whatever is left is picked up by the next run, so the job
+needs no saved state to resume: the cutoff itself is the checkpoint.
+
+Only one node runs the job at a time, and only once per message.retention.interval in the cluster (see ClusterJobLock).
+A run cut short by a dying node is finished by the next run on another node.
+
+Metrics
+- papertrail.retention.deleted: messages deleted so far
+- papertrail.retention.batch: duration of each batch
+- papertrail.retention.last.run.deleted: messages deleted by the last run
+- papertrail.retention.caught.up: 1 if the last run deleted everything that had expired, 0 if it ran out of time
+*/
+@ApplicationScoped
+@Slf4j
+public class MessageContentRetentionJob {
+
+    private final MessageLogContentService service;
+    private final MessageLogContentPartitionRepository partitionRepository;
+    private final MessageRetentionConfig config;
+    private final ClusterJobLock jobLock;
+
+    private final Counter deletedCounter;
+    private final Timer batchTimer;
+    private final AtomicLong lastRunDeleted = new AtomicLong();
+    private final AtomicLong caughtUp = new AtomicLong(1);
+
+    public MessageContentRetentionJob(MessageLogContentService service, MessageLogContentPartitionRepository partitionRepository,
+                                      MessageRetentionConfig config, ClusterJobLock jobLock, MeterRegistry registry) {
+
+        this.service = service;
+        this.partitionRepository = partitionRepository;
+        this.config = config;
+        this.jobLock = jobLock;
+
+        this.deletedCounter = Counter.builder("papertrail.retention.deleted")
+                .description("Expired messages deleted by the retention cleanup")
+                .register(registry);
+        this.batchTimer = Timer.builder("papertrail.retention.batch")
+                .description("Time taken to delete one batch of expired messages")
+                .register(registry);
+        Gauge.builder("papertrail.retention.last.run.deleted", lastRunDeleted, AtomicLong::get)
+                .description("Expired messages deleted by the last cleanup run")
+                .register(registry);
+        Gauge.builder("papertrail.retention.caught.up", caughtUp, AtomicLong::get)
+                .description("Whether the last cleanup run deleted all expired messages")
+                .register(registry);
+    }
+
+    @Scheduled(every = "${message.retention.interval:1h}", delayed = "1m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void cleanupMessages() {
+
+        if (!config.enabled())
+            return;
+
+        jobLock.runExclusively("message-retention", config.interval(), this::deleteExpiredMessages);
+    }
+
+    private void deleteExpiredMessages() {
+
+        OffsetDateTime expiredBefore = OffsetDateTime.now(ZoneOffset.UTC).minus(config.maxAge());
+
+        if (config.mode() == MessageRetentionConfig.Mode.PARTITION) {
+            Optional<OffsetDateTime> legacyEnd = findLegacyPartitionEnd();
+            if (legacyEnd.isEmpty())
+                return; // dropping partitions takes care of everything
+            if (legacyEnd.get().isBefore(expiredBefore))
+                expiredBefore = legacyEnd.get();
+        }
+
+        OffsetDateTime cutoff = expiredBefore;
+        long deadline = System.nanoTime() + config.maxRunTime().toNanos();
+        long deleted = 0;
+        boolean done = false;
+
+        while (true) {
+            int batch = batchTimer.record(() -> service.deleteExpiredMessages(cutoff, config.batchSize()));
+            deletedCounter.increment(batch);
+            deleted += batch;
+
+            if (batch < config.batchSize()) {
+                done = true;
+                break;
+            }
+            if (System.nanoTime() > deadline || !pause())
+                break;
+        }
+
+        lastRunDeleted.set(deleted);
+        caughtUp.set(done ? 1 : 0);
+
+        if (done)
+            log.info("{}Message Content Cleanup Service- Cleaned up {} messages older than {}{}", AnsiColor.GREEN, deleted, cutoff, AnsiColor.RESET);
+        else
+            log.info("{}Message Content Cleanup Service- Cleaned up {} messages older than {}, the rest is left for the next run{}", AnsiColor.YELLOW, deleted, cutoff, AnsiColor.RESET);
+    }
+
+    // the creation time of the first message past the legacy partition, empty if it is gone or could not be looked up
+    private Optional<OffsetDateTime> findLegacyPartitionEnd() {
+        try {
+            return partitionRepository.findPartitions().stream()
+                    .filter(Partition::legacy)
+                    .findFirst()
+                    .map(partition -> Snowflake.toInstant(partition.to()).atOffset(ZoneOffset.UTC));
+        } catch (SQLException e) {
+            log.error("{}Message Content Cleanup Service- Failed to look up the legacy partition, retrying in the next run{}", AnsiColor.RED, AnsiColor.RESET, e);
+            return Optional.empty();
+        }
+    }
+
+    // returns false if interrupted, e.g. on shutdown
+    private boolean pause() {
+        try {
+            Thread.sleep(config.pause());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.eggy03.papertrail.api.service.scheduling;
+
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Makes sure a scheduled maintenance job runs once per interval in the cluster, although @Scheduled fires it on every node.
+
+The node that gets the job's Redisson lock runs it, the others skip that run.
+Nodes start at different times, so their schedules are not aligned and the lock alone would let each of them
+run the job once per interval, one after the other. The node holding the lock therefore also skips the run
+if the last run in the cluster started less than RUN_SPACING of the interval ago. The remainder leaves room for
+scheduler jitter and clock skew between nodes, so that the node that ran the job last is not skipped on its next turn. The lock is taken without a lease time,
+so Redisson's watchdog keeps extending it while the job runs. If the node dies mid-run the watchdog stops with it,
+the lock expires after the watchdog timeout (30s by default) and the next scheduled run on any node takes over.
+Jobs guarded by this lock must therefore be safe to resume from wherever a dead node left off.
+
+After each run the node records when it started, how long it took and who ran it in the Redis hash papertrail:jobs:<job>.
+Every node reads that record back on each scheduled run, so the metrics below show the last run in the cluster
+regardless of which node ran it.
+
+Metrics (tagged with job)
+- papertrail.job.run: duration of the runs on this node
+- papertrail.job.last.run.timestamp: start of the last run in the cluster, epoch seconds
+- papertrail.job.last.run.duration: duration of the last run in the cluster, seconds
+
+Developer Notes
+
+If Redis is unreachable the run is skipped on every node: running a job N times in parallel is what this is here to prevent,
+and the next run will catch up. If only the last run record can not be read, the node holding the lock runs the job,
+which at worst runs it once more than needed.
+*/
+@ApplicationScoped
+@Slf4j
+public class ClusterJobLock {
+
+    private static final String KEY_PREFIX = "papertrail:jobs:";
+    private static final double RUN_SPACING = 0.9;
+
+    private final RedissonClient redissonClient;
+    private final MeterRegistry registry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, JobMetrics> metrics = new ConcurrentHashMap<>();
+
+    public ClusterJobLock(RedissonClient redissonClient, MeterRegistry registry) {
+        this.redissonClient = redissonClient;
+        this.registry = registry;
+    }
+
+    /**
+     * Runs the job if no other node is running it, and no node has started it within the last interval.
+     *
+     * @param interval how often the job is scheduled
+     * @return false if the job was skipped, because another node holds the lock or ran the job recently,
+     * or Redis could not be reached
+     */
+    public boolean runExclusively(@NonNull String jobName, @NonNull Duration interval, @NonNull Runnable job) {
+
+        RLock rlock = redissonClient.getLock(KEY_PREFIX + jobName + ":lock");
+        JobMetrics jobMetrics = metrics.computeIfAbsent(jobName, this::registerMetrics);
+
+        try {
+            if (!rlock.tryLock()) {
+                log.debug("Skipping job {}, it is running on another node", jobName);
+                refreshLastRun(jobName, jobMetrics);
+                return false;
+            }
+        } catch (RuntimeException e) {
+            log.warn(AnsiColor.YELLOW + "Skipping job " + jobName + ", its lock could not be taken" + AnsiColor.RESET, e);
+            return false;
+        }
+
+        try {
+            Instant notBefore = Instant.now().minusMillis((long) (interval.toMillis() * RUN_SPACING));
+            Instant lastStart = refreshLastRun(jobName, jobMetrics);
+            if (lastStart != null && lastStart.isAfter(notBefore)) {
+                log.debug("Skipping job {}, it last started at {}", jobName, lastStart);
+                return false;
+            }
+
+            Instant start = Instant.now();
+            try {
+                jobMetrics.runTimer.record(job);
+            } finally {
+                Duration duration = Duration.between(start, Instant.now());
+                recordLastRun(jobName, jobMetrics, start, duration);
+            }
+            return true;
+        } finally {
+            rlock.unlock();
+        }
+    }
+
+    private void recordLastRun(String jobName, JobMetrics jobMetrics, Instant start, Duration duration) {
+
+        jobMetrics.lastRunStart.set(start.getEpochSecond());
+        jobMetrics.lastRunMillis.set(duration.toMillis());
+
+        try {
+            lastRun(jobName).putAll(Map.of(
+                    "startedAt", start.toString(),
+                    "durationMillis", String.valueOf(duration.toMillis()),
+                    "node", nodeId
+            ));
+        } catch (RuntimeException e) {
+            log.warn("Failed to record the last run of job {}", jobName, e);
+        }
+    }
+
+    // returns when the last run in the cluster started, null if there was none or it could not be read
+    private Instant refreshLastRun(String jobName, JobMetrics jobMetrics) {
+
+        try {
+            Map<String, String> lastRun = lastRun(jobName).readAllMap();
+            if (lastRun.containsKey("startedAt") && lastRun.containsKey("durationMillis")) {
+                Instant startedAt = Instant.parse(lastRun.get("startedAt"));
+                jobMetrics.lastRunStart.set(startedAt.getEpochSecond());
+                jobMetrics.lastRunMillis.set(Long.parseLong(lastRun.get("durationMillis")));
+                return startedAt;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to read the last run of job {}", jobName, e);
+        }
+        return null;
+    }
+
+    private RMap<String, String> lastRun(String jobName) {
+        return redissonClient.getMap(KEY_PREFIX + jobName, StringCodec.INSTANCE);
+    }
+
+    private JobMetrics registerMetrics(String jobName) {
+
+        JobMetrics jobMetrics = new JobMetrics(
+                Timer.builder("papertrail.job.run")
+                        .description("Duration of the maintenance job runs on this node")
+                        .tag("job", jobName)
+                        .register(registry),
+                new AtomicLong(),
+                new AtomicLong()
+        );
+
+        Gauge.builder("papertrail.job.last.run.timestamp", jobMetrics.lastRunStart, AtomicLong::get)
+                .description("Start of the last run of the maintenance job in the cluster, in epoch seconds")
+                .tag("job", jobName)
+                .register(registry);
+        Gauge.builder("papertrail.job.last.run.duration", jobMetrics.lastRunMillis, millis -> millis.get() / 1000.0)
+                .description("Duration of the last run of the maintenance job in the cluster")
+                .tag("job", jobName)
+                .baseUnit("seconds")
+                .register(registry);
+
+        return jobMetrics;
+    }
+
+    private record JobMetrics(Timer runTimer, AtomicLong lastRunStart, AtomicLong lastRunMillis) {
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.eggy03.papertrail.api.service.warmup;
+
+import io.github.eggy03.papertrail.api.configuration.WarmupConfig;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+Runs every WarmupTask once after startup, in the background, and remembers when all of them have finished.
+The readiness check stays DOWN until then, so that no traffic is routed to a cold instance.
+
+A failing task is logged but does not keep the application unready forever.
+The connection it failed to open will simply be opened lazily by the first request, as before.
+*/
+@ApplicationScoped
+@RequiredArgsConstructor
+@Slf4j
+public class ApplicationWarmup {
+
+    private final Instance<WarmupTask> tasks;
+    private final WarmupConfig config;
+
+    private volatile boolean complete = false;
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+
+        if (!config.enabled()) {
+            complete = true;
+            return;
+        }
+
+        Thread.ofVirtual().name("application-warmup").start(this::runTasks);
+    }
+
+    private void runTasks() {
+
+        long start = System.nanoTime();
+
+        for (WarmupTask task : tasks) {
+            long taskStart = System.nanoTime();
+            try {
+                task.warmUp();
+                log.info("{}Warm-up task {} finished in {} ms{}", AnsiColor.GREEN, task.name(), (System.nanoTime() - taskStart) / 1_000_000, AnsiColor.RESET);
+            } catch (Exception e) {
+                log.warn(AnsiColor.YELLOW + "Warm-up task " + task.name() + " failed, continuing without it" + AnsiColor.RESET, e);
+            }
+        }
+
+        complete = true;
+        log.info("{}Warm-up finished in {} ms{}", AnsiColor.GREEN, (System.nanoTime() - start) / 1_000_000, AnsiColor.RESET);
+    }
+}
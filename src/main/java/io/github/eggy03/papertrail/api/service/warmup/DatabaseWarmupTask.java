@@ -0,0 +1,71 @@
+package io.github.eggy03.papertrail.api.service.warmup;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.eggy03.papertrail.api.repository.AuditLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogRegistrationRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/*
+Primes the Agroal pool and Hibernate.
+
+The pool is filled by borrowing min-size connections at the same time, so that they are all
+physically opened now and not by the first requests.
+Then one trivial primary key query per entity, plus the IN query of the batch save, initializes
+the entity persisters and query plans. ID 0 is never a valid Discord snowflake, so these queries never match.
+*/
+@ApplicationScoped
+@RequiredArgsConstructor
+public class DatabaseWarmupTask implements WarmupTask {
+
+    private static final long NON_EXISTENT_ID = 0L;
+
+    private final AgroalDataSource dataSource;
+    private final AuditLogRegistrationRepository auditLogRegistrationRepository;
+    private final MessageLogRegistrationRepository messageLogRegistrationRepository;
+    private final MessageLogContentRepository messageLogContentRepository;
+
+    @Override
+    public String name() {
+        return "database";
+    }
+
+    @Override
+    public void warmUp() throws Exception {
+        primePool();
+        primeHibernate();
+    }
+
+    private void primePool() throws Exception {
+
+        int connections = Math.max(1, dataSource.getConfiguration().connectionPoolConfiguration().minSize());
+        List<Connection> borrowed = new ArrayList<>(connections);
+
+        try {
+            for (int i = 0; i < connections; i++) {
+                Connection connection = dataSource.getConnection();
+                borrowed.add(connection);
+                connection.isValid(5);
+            }
+        } finally {
+            for (Connection connection : borrowed)
+                connection.close();
+        }
+    }
+
+    private void primeHibernate() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            auditLogRegistrationRepository.findByIdOptional(NON_EXISTENT_ID);
+            messageLogRegistrationRepository.findByIdOptional(NON_EXISTENT_ID);
+            messageLogContentRepository.findByIdOptional(NON_EXISTENT_ID);
+            messageLogContentRepository.findExistingIds(Set.of(NON_EXISTENT_ID));
+        });
+    }
+}
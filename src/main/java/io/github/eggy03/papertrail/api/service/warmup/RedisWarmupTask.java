@@ -0,0 +1,57 @@
+package io.github.eggy03.papertrail.api.service.warmup;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Opens the connection pool of the Redis client behind the near caches (see NearCacheManager), which,
+like Redisson, only connects when the first command is sent.
+
+The pool only opens another connection when all open ones are busy, so max-pool-size PINGs are sent
+at the same time, the same way DatabaseWarmupTask fills the Agroal pool.
+*/
+@ApplicationScoped
+public class RedisWarmupTask implements WarmupTask {
+
+    private final RedisDataSource redis;
+    private final int connections;
+
+    public RedisWarmupTask(RedisDataSource redis, @ConfigProperty(name = "quarkus.redis.max-pool-size", defaultValue = "6") int maxPoolSize) {
+        this.redis = redis;
+        this.connections = Math.max(1, maxPoolSize);
+    }
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    @Override
+    public void warmUp() throws Exception {
+
+        List<Thread> pings = new ArrayList<>(connections);
+        List<RuntimeException> failures = new ArrayList<>();
+
+        for (int i = 0; i < connections; i++) {
+            pings.add(Thread.ofVirtual().name("redis-warmup-" + i).start(() -> {
+                try {
+                    redis.execute("PING");
+                } catch (RuntimeException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+
+        for (Thread ping : pings)
+            ping.join();
+
+        if (!failures.isEmpty())
+            throw failures.getFirst();
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.eggy03.papertrail.api.service.warmup;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+/*
+Redisson connects lazily, so without this the first locked save after startup blocks
+while the connection pool is being set up (see LockEnabledMessageContentOperationImpl).
+
+Resolving the client and running one command opens the pool. Taking and releasing each kind of lock
+the lock strategies use loads their Lua scripts into the Redis script cache.
+*/
+@ApplicationScoped
+@IfBuildProperty(name = "message.locks.enabled", stringValue = "true")
+@RequiredArgsConstructor
+public class RedissonWarmupTask implements WarmupTask {
+
+    private static final String WARMUP_KEY = "papertrail:warmup";
+
+    private final RedissonClient redissonClient;
+
+    @Override
+    public String name() {
+        return "redisson";
+    }
+
+    @Override
+    public void warmUp() {
+
+        redissonClient.getBucket(WARMUP_KEY).isExists();
+
+        for (RLock rlock : new RLock[]{
+                redissonClient.getFairLock(WARMUP_KEY + ":fair"),
+                redissonClient.getLock(WARMUP_KEY + ":non-fair")
+        }) {
+            rlock.lock();
+            rlock.unlock();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.eggy03.papertrail.api.service.warmup;
+
+/**
+ * A unit of work that opens connections or initializes caches which would otherwise be set up
+ * lazily by the first requests after startup.
+ * <p>
+ * All {@link WarmupTask} beans are run by {@link ApplicationWarmup} before the application reports ready.
+ */
+public interface WarmupTask {
+
+    String name();
+
+    void warmUp() throws Exception;
+}
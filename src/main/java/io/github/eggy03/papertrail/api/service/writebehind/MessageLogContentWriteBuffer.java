@@ -0,0 +1,369 @@
+package io.github.eggy03.papertrail.api.service.writebehind;
+
+import io.github.eggy03.papertrail.api.configuration.WriteBehindConfig;
+import io.github.eggy03.papertrail.api.dto.BatchItemStatus;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.exceptions.MessageBufferFullException;
+import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.exceptions.MessageSaveFailureException;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+Bounded in-memory buffer for message saves in write-behind mode.
+
+Saves are acknowledged as soon as they are buffered. A single background drainer takes them out
+in batches of up to message.write-behind.batch-size, waiting at most message.write-behind.max-delay
+for a batch to fill up, and writes each batch through MessageLogContentService.saveMessages
+(one transaction, JDBC batched and rewritten into multi-row inserts by the driver).
+
+The queue only holds message IDs, the latest DTO for an ID lives in the pending map until it has been written.
+This lets views, updates and deletes that arrive before the flush see or modify the buffered save:
+- a view reads the pending DTO
+- an update replaces the pending DTO, so only the latest content gets written
+- an upsert replaces the pending DTO and marks it as an upsert, which is flushed with an upsert instead of the batch insert,
+  so that its content is not dropped as a duplicate if the message already exists in the DB
+- a delete removes the pending DTO, so the save is never written
+
+If an update or delete lands while its message is being flushed, the drainer notices that the
+pending DTO changed (or was discarded) after the insert and applies the update or delete to the DB itself.
+Entries are marked as in flight when the drainer takes them, under the same map lock a delete takes to discard them,
+so a delete is only ever applied to a save that it discarded while that save was being written.
+A discard also removes the ID from the queue, so that a new save of the same ID does not queue it twice.
+
+If a batch fails, its saves are retried one by one. A save that fails on its own as well is removed from the buffer
+and counted in papertrail.write.behind.dropped, so that it does not keep serving views or blocking saves of its ID.
+The pending map is bounded by message.write-behind.capacity, like the queue.
+
+Developer Notes
+
+Buffered saves only live in this node's memory. They are lost if the process is killed without a graceful
+shutdown, and other nodes can not see them until they are flushed.
+Saves that turn out to be duplicates of already persisted messages, or that can not be written at all,
+can no longer be reported to the client, they are logged and dropped.
+*/
+@ApplicationScoped
+@IfBuildProperty(name = "message.write-behind.enabled", stringValue = "true")
+@Slf4j
+public class MessageLogContentWriteBuffer {
+
+    private final MessageLogContentService service;
+    private final WriteBehindConfig config;
+
+    private final BlockingQueue<Long> queue;
+    private final ConcurrentMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final Set<Pending> inFlight = ConcurrentHashMap.newKeySet(); // taken by the drainer, not settled yet
+    private final Set<Pending> discardedInFlight = ConcurrentHashMap.newKeySet(); // deleted while being written
+    private final Semaphore pendingSlots;
+
+    private final Timer flushTimer;
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+    private Thread drainer;
+
+    public MessageLogContentWriteBuffer(MessageLogContentService service, WriteBehindConfig config, MeterRegistry registry) {
+
+        this.service = service;
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(config.capacity());
+        this.pendingSlots = new Semaphore(config.capacity());
+
+        Gauge.builder("papertrail.write.behind.queue.depth", queue, BlockingQueue::size)
+                .description("Message saves waiting to be flushed")
+                .register(registry);
+        this.flushTimer = Timer.builder("papertrail.write.behind.flush")
+                .description("Time taken to write one batch of buffered message saves")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejectedCounter = Counter.builder("papertrail.write.behind.rejected")
+                .description("Message saves rejected because the buffer was full")
+                .register(registry);
+        this.droppedCounter = Counter.builder("papertrail.write.behind.dropped")
+                .description("Buffered message saves, updates and deletes that could not be written")
+                .register(registry);
+    }
+
+    public void onStart(@Observes StartupEvent event) {
+        drainer = Thread.ofVirtual().name("message-write-behind-drainer").start(this::drainLoop);
+        log.info("{}Message write-behind buffer started with capacity={} batchSize={} maxDelay={}{}",
+                AnsiColor.GREEN, config.capacity(), config.batchSize(), config.maxDelay(), AnsiColor.RESET);
+    }
+
+    public void onStop(@Observes ShutdownEvent event) throws InterruptedException {
+
+        accepting = false;
+        running = false;
+
+        if (drainer == null)
+            return;
+
+        drainer.join(config.shutdownTimeout());
+        if (drainer.isAlive())
+            log.warn("{}Message write-behind buffer did not drain within {}, {} saves are lost{}", AnsiColor.RED, config.shutdownTimeout(), queue.size(), AnsiColor.RESET);
+        else
+            log.info("{}Message write-behind buffer drained{}", AnsiColor.GREEN, AnsiColor.RESET);
+    }
+
+    public void enqueue(@NonNull MessageLogContentDTO dto) {
+
+        if (!accepting)
+            throw new MessageBufferFullException("Message write buffer is shutting down");
+
+        if (pending.containsKey(dto.getMessageId()))
+            throw new MessageSaveFailureException("Message is already waiting to be saved");
+
+        // pending entries outlive their queue entry until they are written, so both are bounded
+        if (!pendingSlots.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new MessageBufferFullException("Message write buffer is full");
+        }
+
+        Pending entry = new Pending(dto, false);
+        if (pending.putIfAbsent(dto.getMessageId(), entry) != null) { // a concurrent save of the same ID won
+            pendingSlots.release();
+            throw new MessageSaveFailureException("Message is already waiting to be saved");
+        }
+
+        if (!queue.offer(dto.getMessageId())) {
+            removePending(dto.getMessageId(), entry);
+            rejectedCounter.increment();
+            throw new MessageBufferFullException("Message write buffer is full");
+        }
+    }
+
+    public Optional<MessageLogContentDTO> findPending(@NonNull Long messageId) {
+        return Optional.ofNullable(pending.get(messageId)).map(Pending::dto);
+    }
+
+    // an upsert stays an upsert when it is updated
+    public boolean replacePending(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+        return pending.computeIfPresent(messageId, (id, entry) -> new Pending(dto, entry.upsert())) != null;
+    }
+
+    public boolean upsertPending(@NonNull Long messageId, @NonNull MessageLogContentDTO dto) {
+        return pending.computeIfPresent(messageId, (id, entry) -> new Pending(dto, true)) != null;
+    }
+
+    public boolean discardPending(@NonNull Long messageId) {
+
+        boolean[] discarded = new boolean[1];
+        pending.computeIfPresent(messageId, (id, entry) -> {
+            if (inFlight.contains(entry))
+                discardedInFlight.add(entry); // the drainer deletes it once written
+            discarded[0] = true;
+            return null;
+        });
+
+        if (!discarded[0])
+            return false;
+
+        pendingSlots.release();
+        queue.remove(messageId); // still queued unless the drainer took it already
+        return true;
+    }
+
+    // marks the pending entry as in flight, atomically with respect to discardPending
+    private Pending takeForFlush(Long messageId) {
+        return pending.computeIfPresent(messageId, (id, entry) -> {
+            inFlight.add(entry);
+            return entry;
+        });
+    }
+
+    private boolean removePending(Long messageId, Pending entry) {
+
+        if (!pending.remove(messageId, entry))
+            return false;
+
+        pendingSlots.release();
+        return true;
+    }
+
+    private Pending removePending(Long messageId) {
+
+        Pending removed = pending.remove(messageId);
+        if (removed != null)
+            pendingSlots.release();
+        return removed;
+    }
+
+    private void drainLoop() {
+
+        List<Long> messageIds = new ArrayList<>(config.batchSize());
+        long maxDelayNanos = config.maxDelay().toNanos();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Long first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first == null)
+                    continue;
+
+                messageIds.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+
+                // flush as soon as the batch is full or the oldest save has waited max-delay, whichever comes first
+                while (messageIds.size() < config.batchSize()) {
+                    queue.drainTo(messageIds, config.batchSize() - messageIds.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (messageIds.size() >= config.batchSize() || remaining <= 0)
+                        break;
+
+                    Long next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    messageIds.add(next);
+                }
+
+                flush(messageIds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("{}Message write-behind drainer interrupted with {} saves left{}", AnsiColor.RED, queue.size(), AnsiColor.RESET);
+                return;
+            } catch (RuntimeException e) {
+                log.error(AnsiColor.RED + "Message write-behind drainer failed to flush a batch" + AnsiColor.RESET, e);
+            } finally {
+                messageIds.clear();
+            }
+        }
+    }
+
+    private void flush(List<Long> messageIds) {
+
+        // an ID saved again right after a delete can be taken twice in one batch, it is written once.
+        // Saves that were discarded by a delete in the meantime are skipped
+        List<Pending> entries = messageIds.stream()
+                .distinct()
+                .map(this::takeForFlush)
+                .filter(Objects::nonNull)
+                .toList();
+
+        if (entries.isEmpty())
+            return;
+
+        try {
+            List<Pending> batch = entries.stream().filter(entry -> !entry.upsert()).toList();
+            List<Pending> written = new ArrayList<>(entries.size());
+            long start = System.nanoTime();
+            try {
+                written.addAll(insert(batch));
+                entries.stream()
+                        .filter(Pending::upsert)
+                        .filter(this::saveIndividually)
+                        .forEach(written::add);
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+
+            written.forEach(this::settle);
+            log.debug("{}Flushed {} buffered messages{}", AnsiColor.GREEN, written.size(), AnsiColor.RESET);
+        } finally {
+            entries.forEach(entry -> {
+                inFlight.remove(entry);
+                discardedInFlight.remove(entry);
+            });
+        }
+    }
+
+    // returns the entries that were written (or turned out to exist already)
+    private List<Pending> insert(List<Pending> batch) {
+
+        if (batch.isEmpty())
+            return batch;
+
+        try {
+            List<MessageLogContentBatchResultDTO> results = service.saveMessages(batch.stream().map(Pending::dto).toList());
+            results.stream()
+                    .filter(result -> result.getStatus() != BatchItemStatus.CREATED)
+                    .forEach(result -> {
+                        droppedCounter.increment();
+                        log.warn("{}Dropped buffered save of message with ID={}: {}{}", AnsiColor.YELLOW, result.getMessageId(), result.getStatus(), AnsiColor.RESET);
+                    });
+            return batch;
+        } catch (MessageSaveFailureException e) {
+            // another node saved one of the IDs between the lookup and the insert, fall back to saving one by one
+            return batch.stream().filter(this::saveIndividually).toList();
+        } catch (RuntimeException e) {
+            // retrying one by one keeps a single bad save from failing the others
+            log.warn(AnsiColor.YELLOW + "Failed to flush " + batch.size() + " buffered saves, retrying them one by one" + AnsiColor.RESET, e);
+            return batch.stream().filter(this::saveIndividually).toList();
+        }
+    }
+
+    // false if the save was dropped from the buffer
+    private boolean saveIndividually(Pending entry) {
+
+        MessageLogContentDTO dto = entry.dto();
+        try {
+            if (entry.upsert())
+                service.upsertMessage(dto);
+            else
+                service.saveMessage(dto);
+        } catch (MessageSaveFailureException e) {
+            droppedCounter.increment();
+            log.warn("{}Dropped buffered save of message with ID={}: DUPLICATE{}", AnsiColor.YELLOW, dto.getMessageId(), AnsiColor.RESET);
+        } catch (RuntimeException e) {
+            // updates that replaced the pending DTO in the meantime go with it, there is no row to apply them to
+            removePending(dto.getMessageId());
+            droppedCounter.increment();
+            log.error(AnsiColor.RED + "Dropped buffered save of message with ID=" + dto.getMessageId() + AnsiColor.RESET, e);
+            return false;
+        }
+        return true;
+    }
+
+    // applies updates/deletes that replaced or discarded the pending DTO while it was being written, once per written entry
+    private void settle(Pending written) {
+
+        Long messageId = written.dto().getMessageId();
+        if (removePending(messageId, written))
+            return;
+
+        Pending latestEntry = removePending(messageId);
+        if (latestEntry == null && !discardedInFlight.contains(written))
+            return; // neither replaced nor deleted, e.g. dropped after a failed write
+
+        MessageLogContentDTO latest = latestEntry == null ? null : latestEntry.dto();
+        try {
+            if (latest == null)
+                service.deleteMessage(messageId);
+            else
+                service.updateMessage(messageId, latest);
+        } catch (MessageNotFoundException e) {
+            log.debug("{}Message with ID={} was dropped before it could be settled{}", AnsiColor.YELLOW, messageId, AnsiColor.RESET);
+        } catch (RuntimeException e) {
+            droppedCounter.increment();
+            log.error(AnsiColor.RED + "Failed to apply the buffered " + (latest == null ? "delete" : "update") + " of message with ID=" + messageId + AnsiColor.RESET, e);
+        }
+    }
+
+    // upsert: flushed with an upsert instead of the batch insert
+    private record Pending(MessageLogContentDTO dto, boolean upsert) {
+    }
+}
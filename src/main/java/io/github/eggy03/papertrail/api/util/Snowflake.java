@@ -0,0 +1,25 @@
+package io.github.eggy03.papertrail.api.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.Instant;
+
+/*
+Discord IDs are Snowflakes: the upper 42 bits are the milliseconds since the Discord epoch (2015-01-01T00:00:00Z).
+That makes a range of message IDs a range of creation times, which the message content table is partitioned by.
+*/
+@UtilityClass
+public class Snowflake {
+
+    public static final long DISCORD_EPOCH_MILLI = 1420070400000L;
+    private static final int TIMESTAMP_SHIFT = 22;
+
+    public static Instant toInstant(long id) {
+        return Instant.ofEpochMilli((id >> TIMESTAMP_SHIFT) + DISCORD_EPOCH_MILLI);
+    }
+
+    // the smallest ID that can be created at the given instant
+    public static long lowestIdAt(Instant instant) {
+        return (instant.toEpochMilli() - DISCORD_EPOCH_MILLI) << TIMESTAMP_SHIFT;
+    }
+}
@@ -0,0 +1,58 @@
+-- Range-partitions message_log_content_table by message_id.
+-- Message IDs are Discord Snowflakes, so an ID range is a creation time range: expired messages can be
+-- removed by dropping whole partitions, and the primary key on message_id stays global.
+-- Partitions are created ahead of time and dropped by MessageContentPartitionJob.
+-- The first week of daily partitions is created here, so that saves do not depend on the job having run yet.
+
+alter table papertrailbot.message_log_content_table rename to message_log_content_legacy;
+alter index papertrailbot.message_log_content_table_pkey rename to message_log_content_legacy_pkey;
+alter index papertrailbot.idx_message_created_at rename to idx_message_legacy_created_at;
+
+create table papertrailbot.message_log_content_table
+(
+    message_id      bigint                      not null,
+    author_id       bigint                      not null,
+    created_at      timestamp(6) with time zone not null,
+    message_content varchar(4000)               not null,
+    primary key (message_id)
+) partition by range (message_id);
+
+create index idx_message_created_at
+    on papertrailbot.message_log_content_table (created_at);
+
+-- The existing table becomes the first partition, holding everything up to the end of the current UTC day.
+-- Its existing indexes are reused as the partitions of the indexes above.
+-- The bound is the lowest Snowflake of the next day: (epoch millis - 1420070400000) << 22
+-- ATTACH scans the table once to check the bound. The migration runs in one transaction that holds an ACCESS EXCLUSIVE
+-- lock on the table from the rename on, so the table is unavailable until the scan has finished either way.
+-- Expired rows of this partition are deleted row by row until the partition can be dropped, see MessageContentRetentionJob.
+do
+$$
+    declare
+        upper_bound bigint := ((extract(epoch from date_trunc('day', now() at time zone 'utc') + interval '1 day')::bigint * 1000)
+                                   - 1420070400000) << 22;
+    begin
+        execute format('alter table papertrailbot.message_log_content_table '
+                           || 'attach partition papertrailbot.message_log_content_legacy for values from (minvalue) to (%s)',
+                       upper_bound);
+    end
+$$;
+
+-- Daily partitions for the next 7 days (the defaults of message.retention.partition.interval and .ahead),
+-- named like MessageContentPartitionJob names them. The job continues after the last one.
+do
+$$
+    declare
+        day timestamp := date_trunc('day', now() at time zone 'utc') + interval '1 day';
+    begin
+        for i in 1..7
+            loop
+                execute format('create table papertrailbot.%I partition of papertrailbot.message_log_content_table '
+                                   || 'for values from (%s) to (%s)',
+                               'message_log_content_p' || to_char(day, 'YYYYMMDD_HH24MI'),
+                               ((extract(epoch from day)::bigint * 1000) - 1420070400000) << 22,
+                               ((extract(epoch from day + interval '1 day')::bigint * 1000) - 1420070400000) << 22);
+                day := day + interval '1 day';
+            end loop;
+    end
+$$;
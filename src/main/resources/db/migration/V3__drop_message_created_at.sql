@@ -0,0 +1,8 @@
+-- Message IDs are Discord Snowflakes and already encode the creation time (see Snowflake.toInstant),
+-- so retention selects expired messages by a message_id range and created_at is no longer needed.
+-- Dropping the partitioned index also drops its partitions, including idx_message_legacy_created_at.
+
+drop index papertrailbot.idx_message_created_at;
+
+alter table papertrailbot.message_log_content_table
+    drop column created_at;
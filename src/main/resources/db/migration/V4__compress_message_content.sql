@@ -0,0 +1,11 @@
+-- message_content becomes bytea: a format byte followed by the payload (see MessageContentConverter).
+-- Existing rows are converted to the uncompressed format 0x00 and are compressed when they are next updated.
+-- This rewrites every partition of the table under an ACCESS EXCLUSIVE lock, whether message.compression.enabled is set or not,
+-- so reads and writes of messages wait until it has finished (see the Migration Guide in the README).
+
+alter table papertrailbot.message_log_content_table
+    alter column message_content type bytea using ('\x00'::bytea || convert_to(message_content, 'UTF8'));
+
+-- the content is compressed by the application already, don't let TOAST try again
+alter table papertrailbot.message_log_content_table
+    alter column message_content set storage external;
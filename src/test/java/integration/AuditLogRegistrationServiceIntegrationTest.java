@@ -1,5 +1,7 @@
 package integration;
 
+import io.github.eggy03.papertrail.api.cache.NearCacheManager;
+import io.github.eggy03.papertrail.api.cache.NearCacheTestSupport;
 import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
 import io.github.eggy03.papertrail.api.entity.AuditLogRegistration;
 import io.github.eggy03.papertrail.api.repository.AuditLogRegistrationRepository;
@@ -12,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -33,6 +36,10 @@ class AuditLogRegistrationServiceIntegrationTest {
     @Inject
     RedisDataSource redisDataSource;
 
+    // the local tier of the near caches outlives the Redis flush, it is emptied along with it
+    @Inject
+    NearCacheManager nearCacheManager;
+
     static final Long TEST_GUILD_ID = 1302148573926148096L;
     static final Long TEST_CHANNEL_ID = 1302148573926148097L;
 
@@ -61,6 +68,7 @@ class AuditLogRegistrationServiceIntegrationTest {
     void cleanState() {
         QuarkusTransaction.requiringNew().run(repository::deleteAll);
         redisDataSource.flushall();
+        NearCacheTestSupport.clearLocal(nearCacheManager);
     }
 
     @Test
@@ -165,6 +173,35 @@ class AuditLogRegistrationServiceIntegrationTest {
 
     }
 
+    @Test
+    void getGuilds_onlyRegisteredReturned() {
+
+        // register one of the two guilds
+        QuarkusTransaction.requiringNew().run(() -> repository.persistAndFlush(validEntity));
+
+        // look both up twice, the second time the registered one comes from the cache
+        for (int i = 0; i < 2; i++) {
+            given().contentType("application/json").body(List.of(TEST_GUILD_ID, TEST_GUILD_ID + 1))
+                    .when().post(BASE_PATH + "/bulk")
+                    .then().statusCode(200)
+                    .body("size()", is(1))
+                    .body("'" + TEST_GUILD_ID + "'.guildId", is(TEST_GUILD_ID))
+                    .body("'" + TEST_GUILD_ID + "'.channelId", is(TEST_CHANNEL_ID));
+        }
+    }
+
+    @Test
+    void getGuilds_invalidParameters() {
+
+        given().contentType("application/json").body(List.of())
+                .when().post(BASE_PATH + "/bulk")
+                .then().statusCode(400);
+
+        given().contentType("application/json").body(List.of(NEGATIVE_TEST_GUILD_ID))
+                .when().post(BASE_PATH + "/bulk")
+                .then().statusCode(400);
+    }
+
     @Test
     void updateGuild_success() {
 
@@ -0,0 +1,112 @@
+package integration;
+
+import io.github.eggy03.papertrail.api.cache.NearCacheManager;
+import io.github.eggy03.papertrail.api.cache.NearCacheTestSupport;
+import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.repository.AuditLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogRegistrationRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+@QuarkusTest
+class GuildLogConfigurationServiceIntegrationTest {
+
+    private static final String BASE_PATH = "/api/v1/log/guild";
+    private static final String AUDIT_LOG_PATH = "/api/v1/log/audit";
+    private static final String MESSAGE_LOG_PATH = "/api/v1/log/message";
+
+    @Inject
+    AuditLogRegistrationRepository auditLogRepository;
+
+    @Inject
+    MessageLogRegistrationRepository messageLogRepository;
+
+    // see AuditLogRegistrationServiceIntegrationTest for why this gets injected
+    @Inject
+    RedisDataSource redisDataSource;
+
+    // the local tier of the near caches outlives the Redis flush, it is emptied along with it
+    @Inject
+    NearCacheManager nearCacheManager;
+
+    static final Long TEST_GUILD_ID = 1302148573926148096L;
+    static final Long TEST_AUDIT_LOG_CHANNEL_ID = 1302148573926148097L;
+    static final Long TEST_MESSAGE_LOG_CHANNEL_ID = 1302148573926148098L;
+
+    static final Long NEGATIVE_TEST_GUILD_ID = -1302148573926148096L;
+
+    @BeforeEach
+    void cleanState() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            auditLogRepository.deleteAll();
+            messageLogRepository.deleteAll();
+        });
+        redisDataSource.flushall();
+        NearCacheTestSupport.clearLocal(nearCacheManager);
+    }
+
+    @Test
+    void getConfiguration_followsRegistrationChanges() {
+
+        // register for audit logging only
+        given().contentType("application/json").body(new AuditLogRegistrationDTO(TEST_GUILD_ID, TEST_AUDIT_LOG_CHANNEL_ID))
+                .when().post(AUDIT_LOG_PATH)
+                .then().statusCode(201);
+
+        given().contentType("application/json")
+                .when().get(BASE_PATH + "/" + TEST_GUILD_ID)
+                .then().statusCode(200)
+                .body("guildId", is(TEST_GUILD_ID))
+                .body("auditLogChannelId", is(TEST_AUDIT_LOG_CHANNEL_ID))
+                .body("messageLogChannelId", nullValue());
+
+        // register for message logging as well, the cached configuration must pick it up
+        given().contentType("application/json").body(new MessageLogRegistrationDTO(TEST_GUILD_ID, TEST_MESSAGE_LOG_CHANNEL_ID))
+                .when().post(MESSAGE_LOG_PATH)
+                .then().statusCode(201);
+
+        given().contentType("application/json")
+                .when().get(BASE_PATH + "/" + TEST_GUILD_ID)
+                .then().statusCode(200)
+                .body("auditLogChannelId", is(TEST_AUDIT_LOG_CHANNEL_ID))
+                .body("messageLogChannelId", is(TEST_MESSAGE_LOG_CHANNEL_ID));
+
+        // unregister audit logging
+        given().contentType("application/json")
+                .when().delete(AUDIT_LOG_PATH + "/" + TEST_GUILD_ID)
+                .then().statusCode(204);
+
+        given().contentType("application/json")
+                .when().get(BASE_PATH + "/" + TEST_GUILD_ID)
+                .then().statusCode(200)
+                .body("auditLogChannelId", nullValue())
+                .body("messageLogChannelId", is(TEST_MESSAGE_LOG_CHANNEL_ID));
+    }
+
+    @Test
+    void getConfiguration_notRegistered_notFound() {
+
+        given().contentType("application/json")
+                .when().get(BASE_PATH + "/" + TEST_GUILD_ID)
+                .then().statusCode(404);
+
+    }
+
+    @Test
+    void getConfiguration_invalidParameters() {
+
+        given().contentType("application/json")
+                .when().get(BASE_PATH + "/" + NEGATIVE_TEST_GUILD_ID)
+                .then().statusCode(400);
+
+    }
+}
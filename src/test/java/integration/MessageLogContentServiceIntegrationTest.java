@@ -1,8 +1,12 @@
 package integration;
 
+import io.github.eggy03.papertrail.api.cache.NearCacheManager;
+import io.github.eggy03.papertrail.api.cache.NearCacheTestSupport;
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
 import io.github.eggy03.papertrail.api.entity.MessageLogContent;
 import io.github.eggy03.papertrail.api.repository.MessageLogContentRepository;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.util.Snowflake;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.test.junit.QuarkusTest;
@@ -12,6 +16,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -27,12 +36,19 @@ class MessageLogContentServiceIntegrationTest {
     @Inject
     MessageLogContentRepository repository;
 
+    @Inject
+    MessageLogContentService service;
+
     // RedisDataSource while not annotated for CDI, does get injected because Quarkus handles this synthetic bean
     // Or IntelliJ does not see the dependencies
     // see https://github.com/quarkiverse/quarkus-minio/issues/413 and https://github.com/quarkusio/quarkus/discussions/25120
     @Inject
     RedisDataSource redisDataSource;
 
+    // the local tier of the near caches outlives the Redis flush, it is emptied along with it
+    @Inject
+    NearCacheManager nearCacheManager;
+
     static final Long TEST_MESSAGE_ID = 1302148573926148096L;
     static final String TEST_MESSAGE_CONTENT = "message";
     static final Long TEST_AUTHOR_ID = 1302148573926148097L;
@@ -41,7 +57,7 @@ class MessageLogContentServiceIntegrationTest {
     static final Long NEGATIVE_TEST_AUTHOR_ID = -1302148573926148097L;
 
     // prep a valid Entity
-    final MessageLogContent validEntity = new MessageLogContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID, null);
+    final MessageLogContent validEntity = new MessageLogContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
     // prep a valid DTO
     final MessageLogContentDTO validDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
 
@@ -63,6 +79,7 @@ class MessageLogContentServiceIntegrationTest {
     void cleanState() {
         QuarkusTransaction.requiringNew().run(repository::deleteAll);
         redisDataSource.flushall();
+        NearCacheTestSupport.clearLocal(nearCacheManager);
     }
 
     @Test
@@ -135,6 +152,66 @@ class MessageLogContentServiceIntegrationTest {
 
     }
 
+    @Test
+    void saveMessages_success() {
+
+        MessageLogContentDTO secondDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+
+        given().contentType("application/json").body(List.of(validDTO, secondDTO))
+                .when().post(BASE_PATH + "/batch")
+                .then().statusCode(200)
+                .body("[0].messageId", is(TEST_MESSAGE_ID))
+                .body("[0].status", is("CREATED"))
+                .body("[1].messageId", is(TEST_MESSAGE_ID + 1))
+                .body("[1].status", is("CREATED"));
+
+        // assert that both were saved
+        long count = QuarkusTransaction
+                .requiringNew()
+                .call(() -> repository.count());
+
+        assertThat(count).isEqualTo(2);
+    }
+
+    @Test
+    void saveMessages_duplicateAndInvalidItems_partialSuccess() {
+
+        // save once, so that the batch contains an already existing message
+        QuarkusTransaction.requiringNew().run(() -> repository.persistAndFlush(validEntity));
+
+        MessageLogContentDTO newDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+        MessageLogContentDTO invalidDTO = new MessageLogContentDTO(NEGATIVE_TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+
+        given().contentType("application/json").body(Arrays.asList(validDTO, newDTO, newDTO, invalidDTO))
+                .when().post(BASE_PATH + "/batch")
+                .then().statusCode(200)
+                .body("[0].status", is("DUPLICATE"))
+                .body("[1].status", is("CREATED"))
+                .body("[2].status", is("DUPLICATE"))
+                .body("[3].status", is("INVALID"));
+
+        // assert that only the new message was saved
+        Optional<MessageLogContent> entityOptional = QuarkusTransaction
+                .requiringNew()
+                .call(() -> repository.findByIdOptional(TEST_MESSAGE_ID + 1));
+
+        Optional<MessageLogContent> entityOptionalTwo = QuarkusTransaction
+                .requiringNew()
+                .call(() -> repository.findByIdOptional(NEGATIVE_TEST_MESSAGE_ID));
+
+        assertThat(entityOptional).isPresent();
+        assertThat(entityOptionalTwo).isEmpty();
+    }
+
+    @Test
+    void saveMessages_emptyBatch_badRequest() {
+
+        given().contentType("application/json").body(List.of())
+                .when().post(BASE_PATH + "/batch")
+                .then().statusCode(400);
+
+    }
+
     @Test
     void getMessage_success() {
 
@@ -198,6 +275,32 @@ class MessageLogContentServiceIntegrationTest {
 
     }
 
+    @Test
+    void updateMessage_replacesLocallyCachedValue() {
+
+        QuarkusTransaction.requiringNew().run(() -> repository.persistAndFlush(validEntity));
+
+        // view once to fill the cache, then change the row behind its back and drop the Redis tier
+        given().when().get(BASE_PATH + "/" + TEST_MESSAGE_ID).then().statusCode(200);
+        QuarkusTransaction.requiringNew().run(() -> repository.findById(TEST_MESSAGE_ID).setMessageContent("changedBehindTheCache"));
+        redisDataSource.flushall();
+
+        // the old content can only have come from the local tier
+        given().when().get(BASE_PATH + "/" + TEST_MESSAGE_ID)
+                .then().statusCode(200)
+                .body("messageContent", is(TEST_MESSAGE_CONTENT));
+
+        // an update through the API replaces it
+        MessageLogContentDTO dto = new MessageLogContentDTO(TEST_MESSAGE_ID, "updatedMessage", TEST_AUTHOR_ID);
+        given().contentType("application/json").body(dto)
+                .when().put(BASE_PATH)
+                .then().statusCode(200);
+
+        given().when().get(BASE_PATH + "/" + TEST_MESSAGE_ID)
+                .then().statusCode(200)
+                .body("messageContent", is("updatedMessage"));
+    }
+
     @Test
     void updateMessage_doesNotExist_notFound() {
 
@@ -215,6 +318,45 @@ class MessageLogContentServiceIntegrationTest {
 
     }
 
+    @Test
+    void upsertMessage_createsThenUpdates() {
+
+        // first upsert saves the message
+        given().contentType("application/json").body(validDTO)
+                .when().put(BASE_PATH + "/upsert")
+                .then().statusCode(201)
+                .body("created", is(true))
+                .body("message.messageContent", is(TEST_MESSAGE_CONTENT));
+
+        // second upsert updates it
+        MessageLogContentDTO dto = new MessageLogContentDTO(TEST_MESSAGE_ID, "updatedMessage", TEST_AUTHOR_ID);
+        given().contentType("application/json").body(dto)
+                .when().put(BASE_PATH + "/upsert")
+                .then().statusCode(200)
+                .body("created", is(false))
+                .body("message.messageContent", is("updatedMessage"));
+
+        // verify the update went through the converter
+        Optional<MessageLogContent> entityOptional = QuarkusTransaction
+                .requiringNew()
+                .call(() -> repository.findByIdOptional(TEST_MESSAGE_ID));
+
+        assertThat(entityOptional)
+                .isPresent()
+                .get()
+                .extracting(MessageLogContent::getMessageContent)
+                .isEqualTo("updatedMessage");
+    }
+
+    @ParameterizedTest
+    @MethodSource("invalidDTOs")
+    void upsertMessage_validationFails_badRequest(MessageLogContentDTO dto) {
+
+        given().contentType("application/json").body(dto)
+                .when().put(BASE_PATH + "/upsert")
+                .then().statusCode(400);
+    }
+
     @ParameterizedTest
     @MethodSource("invalidDTOs")
     void updateGuild_validationFails_badRequest(MessageLogContentDTO dto) {
@@ -265,6 +407,23 @@ class MessageLogContentServiceIntegrationTest {
 
     }
 
+    @Test
+    void deleteMessage_evictsLocallyCachedValue() {
+
+        QuarkusTransaction.requiringNew().run(() -> repository.persistAndFlush(validEntity));
+
+        // view once so that the message is held in the local tier
+        given().when().get(BASE_PATH + "/" + TEST_MESSAGE_ID)
+                .then().statusCode(200)
+                .body("messageContent", is(TEST_MESSAGE_CONTENT));
+
+        given().when().delete(BASE_PATH + "/" + TEST_MESSAGE_ID)
+                .then().statusCode(204);
+
+        given().when().get(BASE_PATH + "/" + TEST_MESSAGE_ID)
+                .then().statusCode(404);
+    }
+
     @Test
     void deleteMessage_doesNotExist_notFound() {
 
@@ -291,4 +450,42 @@ class MessageLogContentServiceIntegrationTest {
 
     }
 
+    @Test
+    void deleteExpiredMessages_deletesInBatches() {
+
+        // save three messages, all of which are older than a cutoff in the future
+        QuarkusTransaction.requiringNew().run(() -> {
+            repository.persist(validEntity);
+            repository.persist(new MessageLogContent(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID));
+            repository.persist(new MessageLogContent(TEST_MESSAGE_ID + 2, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID));
+        });
+        OffsetDateTime cutoff = OffsetDateTime.now(ZoneOffset.UTC).plusMinutes(1);
+
+        assertThat(service.deleteExpiredMessages(cutoff, 2)).isEqualTo(2);
+        assertThat(service.deleteExpiredMessages(cutoff, 2)).isEqualTo(1);
+        assertThat(service.deleteExpiredMessages(cutoff, 2)).isZero();
+
+        long count = QuarkusTransaction
+                .requiringNew()
+                .call(() -> repository.count());
+
+        assertThat(count).isZero();
+    }
+
+    @Test
+    void deleteExpiredMessages_keepsRecentMessages() {
+
+        // the age of a message comes from its ID, so save one with an ID of today
+        Long recentMessageId = Snowflake.lowestIdAt(Instant.now());
+        QuarkusTransaction.requiringNew().run(() -> repository.persistAndFlush(
+                new MessageLogContent(recentMessageId, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID)));
+
+        assertThat(service.deleteExpiredMessages(OffsetDateTime.now(ZoneOffset.UTC).minusDays(30), 10)).isZero();
+
+        // view the message - expect it to still be there
+        given().contentType("application/json")
+                .when().get(BASE_PATH + "/" + recentMessageId)
+                .then().statusCode(200);
+    }
+
 }
@@ -0,0 +1,21 @@
+package io.github.eggy03.papertrail.api.cache;
+
+import io.quarkus.arc.ClientProxy;
+
+/*
+Empties the local near cache tiers for tests, which flush Redis between test cases behind the caches' back.
+Lives in the package of the caches, so that clearing stays out of their public API.
+*/
+public final class NearCacheTestSupport {
+
+    private NearCacheTestSupport() {
+    }
+
+    public static void clearLocal(NearCacheManager manager) {
+        ClientProxy.unwrap(manager).clearLocal(); // the injected bean is a client proxy
+    }
+
+    public static void clearLocal(NearCache<?> cache) {
+        cache.clearLocal();
+    }
+}
@@ -0,0 +1,41 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.accesslog.AccessLogEntry;
+import io.github.eggy03.papertrail.api.accesslog.AccessLogFormatter;
+import io.github.eggy03.papertrail.api.util.AnsiColor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogFormatterUnitTest {
+
+    final AccessLogEntry entry = new AccessLogEntry(1767225600000L, "GET", "/api/v1/content/message/1", 200, 1_234_567L);
+
+    @Test
+    void appendText_coloredMethodAndMillis() {
+
+        StringBuilder line = new StringBuilder();
+        AccessLogFormatter.appendText(line, entry);
+
+        assertThat(line).hasToString(AnsiColor.BLUE + "GET" + AnsiColor.RESET + " /api/v1/content/message/1 -> 200 (1.234 ms)");
+    }
+
+    @Test
+    void appendJson_oneObjectWithoutAnsiCodes() {
+
+        StringBuilder line = new StringBuilder();
+        AccessLogFormatter.appendJson(line, entry);
+
+        assertThat(line).hasToString("{\"timestamp\":\"2026-01-01T00:00:00Z\",\"method\":\"GET\","
+                + "\"path\":\"/api/v1/content/message/1\",\"status\":200,\"durationMs\":1.234}");
+    }
+
+    @Test
+    void appendJson_escapesPath() {
+
+        StringBuilder line = new StringBuilder();
+        AccessLogFormatter.appendJson(line, new AccessLogEntry(0, "GET", "/a\"b\\c\n", 404, 5_000L));
+
+        assertThat(line.toString()).contains("\"path\":\"/a\\\"b\\\\c\\u000a\"").endsWith("\"durationMs\":0.005}");
+    }
+}
@@ -0,0 +1,134 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.service.scheduling.ClusterJobLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterJobLockUnitTest {
+
+    static final Duration INTERVAL = Duration.ofHours(1);
+
+    @Mock
+    RedissonClient redissonClient;
+    @Mock
+    RLock rlock;
+    @Mock
+    RMap<String, String> lastRun;
+
+    SimpleMeterRegistry registry;
+    ClusterJobLock jobLock;
+
+    @BeforeEach
+    void createLock() {
+        registry = new SimpleMeterRegistry();
+        jobLock = new ClusterJobLock(redissonClient, registry);
+        when(redissonClient.getLock("papertrail:jobs:test-job:lock")).thenReturn(rlock);
+    }
+
+    @Test
+    void runExclusively_lockFree_runsAndRecordsLastRun() {
+
+        when(rlock.tryLock()).thenReturn(true);
+        when(redissonClient.<String, String>getMap("papertrail:jobs:test-job", StringCodec.INSTANCE)).thenReturn(lastRun);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThat(jobLock.runExclusively("test-job", INTERVAL, runs::incrementAndGet)).isTrue();
+
+        assertThat(runs).hasValue(1);
+        verify(lastRun).putAll(anyMap());
+        verify(rlock).unlock();
+        assertThat(registry.get("papertrail.job.run").tag("job", "test-job").timer().count()).isEqualTo(1);
+        assertThat(registry.get("papertrail.job.last.run.timestamp").tag("job", "test-job").gauge().value()).isPositive();
+    }
+
+    @Test
+    void runExclusively_heldByOtherNode_skipsAndReadsTheirLastRun() {
+
+        Instant otherRun = Instant.parse("2026-01-01T00:00:00Z");
+        when(rlock.tryLock()).thenReturn(false);
+        when(redissonClient.<String, String>getMap("papertrail:jobs:test-job", StringCodec.INSTANCE)).thenReturn(lastRun);
+        when(lastRun.readAllMap()).thenReturn(Map.of("startedAt", otherRun.toString(), "durationMillis", "1500", "node", "other"));
+
+        assertThat(jobLock.runExclusively("test-job", INTERVAL, () -> {
+            throw new AssertionError("job must not run");
+        })).isFalse();
+
+        verify(rlock, never()).unlock();
+        assertThat(registry.get("papertrail.job.last.run.timestamp").tag("job", "test-job").gauge().value()).isEqualTo(otherRun.getEpochSecond());
+        assertThat(registry.get("papertrail.job.last.run.duration").tag("job", "test-job").gauge().value()).isEqualTo(1.5);
+    }
+
+    @Test
+    void runExclusively_ranWithinInterval_skipsAndReleasesLock() {
+
+        when(rlock.tryLock()).thenReturn(true);
+        when(redissonClient.<String, String>getMap("papertrail:jobs:test-job", StringCodec.INSTANCE)).thenReturn(lastRun);
+        // another node, whose schedule is not aligned with this one, ran it 40 minutes ago
+        when(lastRun.readAllMap()).thenReturn(Map.of("startedAt", Instant.now().minus(Duration.ofMinutes(40)).toString(), "durationMillis", "1500", "node", "other"));
+
+        assertThat(jobLock.runExclusively("test-job", INTERVAL, () -> {
+            throw new AssertionError("job must not run");
+        })).isFalse();
+
+        verify(rlock).unlock();
+        verify(lastRun, never()).putAll(anyMap());
+    }
+
+    @Test
+    void runExclusively_lastRunAboutAnIntervalAgo_runs() {
+
+        when(rlock.tryLock()).thenReturn(true);
+        when(redissonClient.<String, String>getMap("papertrail:jobs:test-job", StringCodec.INSTANCE)).thenReturn(lastRun);
+        // this node ran it on its previous turn, its scheduler fired a little early this time
+        when(lastRun.readAllMap()).thenReturn(Map.of("startedAt", Instant.now().minus(Duration.ofMinutes(59)).toString(), "durationMillis", "1500", "node", "this"));
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThat(jobLock.runExclusively("test-job", INTERVAL, runs::incrementAndGet)).isTrue();
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void runExclusively_redisDown_skips() {
+
+        when(rlock.tryLock()).thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(jobLock.runExclusively("test-job", INTERVAL, () -> {
+            throw new AssertionError("job must not run");
+        })).isFalse();
+    }
+
+    @Test
+    void runExclusively_jobFails_releasesLock() {
+
+        when(rlock.tryLock()).thenReturn(true);
+        when(redissonClient.<String, String>getMap("papertrail:jobs:test-job", StringCodec.INSTANCE)).thenReturn(lastRun);
+
+        assertThatThrownBy(() -> jobLock.runExclusively("test-job", INTERVAL, () -> {
+            throw new IllegalStateException("job failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        verify(rlock).unlock();
+    }
+}
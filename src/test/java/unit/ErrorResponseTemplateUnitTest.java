@@ -0,0 +1,52 @@
+package unit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.exceptions.entity.ErrorResponseTemplate;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorResponseTemplateUnitTest {
+
+    final ErrorResponseTemplate template = new ErrorResponseTemplate(Response.Status.NOT_FOUND, MessageNotFoundException.class);
+
+    @Test
+    void toResponse_writesErrorResponseFields() throws Exception {
+
+        JsonNode body = new ObjectMapper().readTree(body("Message hasn't been saved yet", "/api/v1/content/message/1"));
+
+        assertThat(body.get("status").asInt()).isEqualTo(404);
+        assertThat(body.get("error").asText()).isEqualTo("MessageNotFoundException");
+        assertThat(body.get("message").asText()).isEqualTo("Message hasn't been saved yet");
+        assertThat(LocalDateTime.parse(body.get("timeStamp").asText())).isBeforeOrEqualTo(LocalDateTime.now());
+        // seconds are always written, like Jackson does
+        assertThat(body.get("timeStamp").asText()).matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(\\.\\d+)?");
+        assertThat(body.get("path").asText()).isEqualTo("/api/v1/content/message/1");
+    }
+
+    @Test
+    void toResponse_escapesMessageAndPath() throws Exception {
+
+        JsonNode body = new ObjectMapper().readTree(body("quote \" and\nnewline", "/a\\b"));
+
+        assertThat(body.get("message").asText()).isEqualTo("quote \" and\nnewline");
+        assertThat(body.get("path").asText()).isEqualTo("/a\\b");
+    }
+
+    @Test
+    void toResponse_nullMessage() throws Exception {
+
+        JsonNode body = new ObjectMapper().readTree(body(null, "/"));
+
+        assertThat(body.get("message").isNull()).isTrue();
+    }
+
+    private String body(String message, String path) {
+        return (String) template.toResponse(message, path).build().getEntity();
+    }
+}
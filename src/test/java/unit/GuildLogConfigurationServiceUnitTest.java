@@ -0,0 +1,102 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.cache.NearCache;
+import io.github.eggy03.papertrail.api.dto.AuditLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.dto.GuildLogConfigurationDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
+import io.github.eggy03.papertrail.api.exceptions.GuildNotFoundException;
+import io.github.eggy03.papertrail.api.repository.AuditLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
+import io.github.eggy03.papertrail.api.service.GuildLogConfigurationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GuildLogConfigurationServiceUnitTest {
+
+    static final Long TEST_GUILD_ID = 1302148573926148096L;
+    static final Long TEST_AUDIT_LOG_CHANNEL_ID = 1302148573926148097L;
+    static final Long TEST_MESSAGE_LOG_CHANNEL_ID = 1302148573926148098L;
+    @Mock
+    AuditLogRegistrationRepository auditLogRepository;
+    @Mock
+    MessageLogRegistrationRepository messageLogRepository;
+    @Mock
+    NearCache<GuildLogConfigurationDTO> cache;
+    @Mock
+    ReadReplicaRouter replicaRouter;
+    @InjectMocks
+    GuildLogConfigurationService service;
+
+    @Test
+    void getConfiguration_bothRegistered() {
+
+        passThroughCache();
+        when(auditLogRepository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.of(new AuditLogRegistrationDTO(TEST_GUILD_ID, TEST_AUDIT_LOG_CHANNEL_ID)), false));
+        when(messageLogRepository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.of(new MessageLogRegistrationDTO(TEST_GUILD_ID, TEST_MESSAGE_LOG_CHANNEL_ID)), false));
+
+        assertThat(service.viewGuildConfiguration(TEST_GUILD_ID))
+                .isEqualTo(new GuildLogConfigurationDTO(TEST_GUILD_ID, TEST_AUDIT_LOG_CHANNEL_ID, TEST_MESSAGE_LOG_CHANNEL_ID));
+    }
+
+    @Test
+    void getConfiguration_onlyAuditLogRegistered() {
+
+        passThroughCache();
+        when(auditLogRepository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.of(new AuditLogRegistrationDTO(TEST_GUILD_ID, TEST_AUDIT_LOG_CHANNEL_ID)), false));
+        when(messageLogRepository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.empty(), false));
+
+        assertThat(service.viewGuildConfiguration(TEST_GUILD_ID))
+                .isEqualTo(new GuildLogConfigurationDTO(TEST_GUILD_ID, TEST_AUDIT_LOG_CHANNEL_ID, null));
+    }
+
+    @Test
+    void getConfiguration_notRegistered_notFound() {
+
+        passThroughCache();
+        when(auditLogRepository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.empty(), false));
+        when(messageLogRepository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.empty(), false));
+
+        assertThrows(GuildNotFoundException.class, () -> service.viewGuildConfiguration(TEST_GUILD_ID));
+    }
+
+    @Test
+    void getConfiguration_cached_skipsDatabase() {
+
+        GuildLogConfigurationDTO cached = new GuildLogConfigurationDTO(TEST_GUILD_ID, TEST_AUDIT_LOG_CHANNEL_ID, null);
+        when(cache.getOrLoad(eq(TEST_GUILD_ID), any())).thenReturn(cached);
+
+        assertThat(service.viewGuildConfiguration(TEST_GUILD_ID)).isEqualTo(cached);
+
+        verifyNoInteractions(auditLogRepository, messageLogRepository);
+    }
+
+    @Test
+    void invalidate_evictsCacheEntry() {
+
+        service.invalidate(TEST_GUILD_ID);
+
+        verify(cache).invalidate(TEST_GUILD_ID);
+    }
+
+    // behave like an empty cache, so reads go straight to the loader
+    private void passThroughCache() {
+        when(cache.getOrLoad(eq(TEST_GUILD_ID), any())).thenAnswer(invocation ->
+                invocation.<Function<Long, NearCache.Loaded<GuildLogConfigurationDTO>>>getArgument(1).apply(TEST_GUILD_ID).value());
+    }
+}
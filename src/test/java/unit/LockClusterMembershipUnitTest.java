@@ -0,0 +1,132 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.service.locks.LockClusterMembership;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LockClusterMembershipUnitTest {
+
+    static final long JOIN_DELAY_NANOS = Duration.ofSeconds(20).toNanos(); // two heartbeats
+
+    @Mock
+    RedissonClient redissonClient;
+    @Mock
+    RScript script;
+
+    final AtomicLong clock = new AtomicLong();
+    LockClusterMembership membership;
+
+    @BeforeEach
+    void createMembership() {
+        membership = new LockClusterMembership(redissonClient, clock::get);
+    }
+
+    @Test
+    void beforeFirstHeartbeat_notSeenAndAssumedClustered() {
+
+        assertThat(membership.isSeenByAllNodes()).isFalse();
+        assertThat(membership.isClustered()).isTrue();
+    }
+
+    @Test
+    void joined_seenOnlyAfterJoinDelay() {
+
+        heartbeatReturns(1, 2);
+        membership.heartbeat();
+
+        assertThat(membership.isClustered()).isTrue();
+        assertThat(membership.isSeenByAllNodes()).isFalse();
+
+        clock.set(JOIN_DELAY_NANOS - 1);
+        assertThat(membership.isSeenByAllNodes()).isFalse();
+
+        clock.set(JOIN_DELAY_NANOS);
+        assertThat(membership.isSeenByAllNodes()).isTrue();
+    }
+
+    @Test
+    void onlyNode_notClustered() {
+
+        heartbeatReturns(1, 1);
+        membership.heartbeat();
+
+        assertThat(membership.isClustered()).isFalse();
+    }
+
+    @Test
+    void heartbeatFails_assumesClustered() {
+
+        heartbeatReturns(1, 1);
+        membership.heartbeat();
+        assertThat(membership.isClustered()).isFalse();
+
+        when(script.eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.MULTI), anyList(), any(), any()))
+                .thenThrow(new IllegalStateException("Redis is unreachable"));
+        membership.heartbeat();
+
+        assertThat(membership.isClustered()).isTrue();
+    }
+
+    @Test
+    void readdedAfterBeingPruned_joinDelayStartsOver() {
+
+        heartbeatReturns(1, 2);
+        membership.heartbeat();
+        clock.set(JOIN_DELAY_NANOS);
+        assertThat(membership.isSeenByAllNodes()).isTrue();
+
+        // an ordinary heartbeat does not restart the delay
+        heartbeatReturns(0, 2);
+        membership.heartbeat();
+        assertThat(membership.isSeenByAllNodes()).isTrue();
+
+        // the entry was pruned while this node could not reach Redis, and got added again
+        heartbeatReturns(1, 2);
+        membership.heartbeat();
+        assertThat(membership.isSeenByAllNodes()).isFalse();
+    }
+
+    @Test
+    void awaitSeenByAllNodes_neverJoined_givesUpAfterTimeout() {
+
+        long start = System.nanoTime();
+
+        assertThat(membership.awaitSeenByAllNodes(Duration.ofMillis(200))).isFalse();
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(200).toNanos());
+    }
+
+    @Test
+    void awaitSeenByAllNodes_settled_returnsRightAway() {
+
+        heartbeatReturns(1, 2);
+        membership.heartbeat();
+        clock.set(JOIN_DELAY_NANOS);
+
+        assertThat(membership.awaitSeenByAllNodes(Duration.ZERO)).isTrue();
+    }
+
+    private void heartbeatReturns(long added, long aliveNodes) {
+        when(redissonClient.getScript(StringCodec.INSTANCE)).thenReturn(script);
+        when(script.eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.MULTI), anyList(), any(), any()))
+                .thenReturn(List.of(added, aliveNodes));
+    }
+}
@@ -0,0 +1,138 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.MessageLocksConfig;
+import io.github.eggy03.papertrail.api.dto.LockContentionDTO;
+import io.github.eggy03.papertrail.api.service.locks.LockContentionTracker;
+import io.github.eggy03.papertrail.api.service.locks.LockMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LockContentionTrackerUnitTest {
+
+    static final Long TEST_MESSAGE_ID = 1302148573926148096L;
+
+    @Mock
+    MessageLocksConfig config;
+    @Mock
+    MessageLocksConfig.Contention contention;
+
+    SimpleMeterRegistry registry;
+    LockContentionTracker tracker;
+    LockMetrics lockMetrics;
+
+    @BeforeEach
+    void createTracker() {
+        when(config.contention()).thenReturn(contention);
+        when(contention.topK()).thenReturn(2);
+
+        registry = new SimpleMeterRegistry();
+        tracker = new LockContentionTracker(config, registry);
+        lockMetrics = new LockMetrics(registry, tracker);
+    }
+
+    @Test
+    void hottest_sortedByAcquisitions() {
+
+        lock(TEST_MESSAGE_ID, 3);
+        lock(TEST_MESSAGE_ID + 1, 1);
+
+        assertThat(tracker.hottest(10))
+                .extracting(LockContentionDTO::getMessageId, LockContentionDTO::getAcquisitions)
+                .containsExactly(
+                        tuple(TEST_MESSAGE_ID, 3L),
+                        tuple(TEST_MESSAGE_ID + 1, 1L)
+                );
+    }
+
+    @Test
+    void tableFull_newKeyReplacesSmallestAndInheritsItsCount() {
+
+        lock(TEST_MESSAGE_ID, 5);
+        lock(TEST_MESSAGE_ID + 1, 2);
+        lock(TEST_MESSAGE_ID + 2, 1);
+
+        List<LockContentionDTO> hottest = tracker.hottest(10);
+
+        assertThat(hottest).extracting(LockContentionDTO::getMessageId).containsExactly(TEST_MESSAGE_ID, TEST_MESSAGE_ID + 2);
+        assertThat(hottest.get(1).getAcquisitions()).isEqualTo(3);
+        assertThat(hottest.get(1).getAcquisitionsError()).isEqualTo(2);
+    }
+
+    @Test
+    void tableFull_repeatedEvictions_keepCountsOrdered() {
+
+        lock(TEST_MESSAGE_ID, 1);
+        lock(TEST_MESSAGE_ID + 1, 1);
+        lock(TEST_MESSAGE_ID + 2, 1); // replaces one of the two with count 1
+        lock(TEST_MESSAGE_ID + 3, 1); // replaces the other one
+        lock(TEST_MESSAGE_ID + 2, 2);
+
+        assertThat(tracker.hottest(10))
+                .extracting(LockContentionDTO::getMessageId, LockContentionDTO::getAcquisitions, LockContentionDTO::getAcquisitionsError)
+                .containsExactly(
+                        tuple(TEST_MESSAGE_ID + 2, 4L, 1L),
+                        tuple(TEST_MESSAGE_ID + 3, 2L, 1L)
+                );
+        assertThat(tracker.hottest(1)).hasSize(1);
+    }
+
+    @Test
+    void waiters_countedUntilAcquired() {
+
+        // the first operation holds the lock while two more wait for it
+        Timer.Sample hold = lockMetrics.acquire("UPDATE", TEST_MESSAGE_ID, () -> {
+        });
+        Timer.Sample secondWait = lockMetrics.startWait(TEST_MESSAGE_ID);
+        lockMetrics.startWait(TEST_MESSAGE_ID);
+
+        assertThat(tracker.hottest(1).getFirst().getWaiting()).isEqualTo(2);
+        assertThat(tracker.hottest(1).getFirst().getMaxWaiting()).isEqualTo(2);
+        assertThat(registry.get("papertrail.lock.waiting").gauge().value()).isEqualTo(2);
+
+        lockMetrics.released("UPDATE", TEST_MESSAGE_ID, hold);
+        lockMetrics.acquired("UPDATE", TEST_MESSAGE_ID, secondWait);
+
+        assertThat(tracker.hottest(1).getFirst().getWaiting()).isEqualTo(1);
+        assertThat(tracker.hottest(1).getFirst().getAcquisitions()).isEqualTo(2);
+    }
+
+    @Test
+    void lockFails_noLongerWaiting() {
+
+        assertThatThrownBy(() -> lockMetrics.acquire("SAVE", TEST_MESSAGE_ID, () -> {
+            throw new IllegalStateException("connection refused");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.get("papertrail.lock.waiting").gauge().value()).isZero();
+        assertThat(tracker.hottest(10)).isEmpty();
+    }
+
+    @Test
+    void batchSaves_onlyTimed() {
+
+        lockMetrics.released("BATCH SAVE", null, lockMetrics.acquire("BATCH SAVE", null, () -> {
+        }));
+
+        assertThat(tracker.hottest(10)).isEmpty();
+        assertThat(registry.get("papertrail.lock.hold").tag("operation", "batch_save").timer().count()).isEqualTo(1);
+    }
+
+    private void lock(Long messageId, int times) {
+        for (int i = 0; i < times; i++)
+            lockMetrics.released("UPDATE", messageId, lockMetrics.acquire("UPDATE", messageId, () -> {
+            }));
+    }
+}
@@ -0,0 +1,85 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.MessageCompressionConfig;
+import io.github.eggy03.papertrail.api.entity.converter.MessageContentConverter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageContentConverterUnitTest {
+
+    static final String CHAT_MESSAGE = "Does anyone know how to fix this? I think it's because the bot doesn't have the role, " +
+            "can someone please help me with this? https://cdn.discordapp.com/attachments/1302148573926148096/screenshot.png";
+
+    @Mock
+    MessageCompressionConfig config;
+
+    MessageContentConverter converter;
+
+    @BeforeEach
+    void createConverter() {
+        converter = new MessageContentConverter(config);
+        lenient().when(config.minLength()).thenReturn(32);
+    }
+
+    @Test
+    void chatMessage_compressedAndRestored() {
+
+        when(config.enabled()).thenReturn(true);
+
+        byte[] column = converter.convertToDatabaseColumn(CHAT_MESSAGE);
+
+        assertThat(column[0]).isEqualTo((byte) 0x01);
+        assertThat(column.length).isLessThan(CHAT_MESSAGE.getBytes(StandardCharsets.UTF_8).length / 2);
+        assertThat(converter.convertToEntityAttribute(column)).isEqualTo(CHAT_MESSAGE);
+    }
+
+    @Test
+    void unicodeMessage_roundTrips() {
+
+        when(config.enabled()).thenReturn(true);
+        String message = "ça marche 👍 日本語のメッセージ ".repeat(20);
+
+        assertThat(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(message))).isEqualTo(message);
+    }
+
+    @Test
+    void shortMessage_storedPlain() {
+
+        when(config.enabled()).thenReturn(true);
+
+        byte[] column = converter.convertToDatabaseColumn("lol");
+
+        assertThat(column).containsExactly(0x00, 'l', 'o', 'l');
+        assertThat(converter.convertToEntityAttribute(column)).isEqualTo("lol");
+    }
+
+    @Test
+    void compressionDisabled_storedPlainButCompressedStillReadable() {
+
+        when(config.enabled()).thenReturn(true);
+        byte[] compressed = converter.convertToDatabaseColumn(CHAT_MESSAGE);
+
+        when(config.enabled()).thenReturn(false);
+
+        assertThat(converter.convertToDatabaseColumn(CHAT_MESSAGE)[0]).isEqualTo((byte) 0x00);
+        assertThat(converter.convertToEntityAttribute(compressed)).isEqualTo(CHAT_MESSAGE);
+    }
+
+    @Test
+    void unknownFormat_throws() {
+
+        assertThatThrownBy(() -> converter.convertToEntityAttribute(new byte[]{0x7f, 1, 2}))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,168 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.MessageRetentionConfig;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository.Partition;
+import io.github.eggy03.papertrail.api.service.retention.MessageContentPartitionJob;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import io.github.eggy03.papertrail.api.service.scheduling.ClusterJobLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageContentPartitionJobUnitTest {
+
+    static final long DAY_OF_IDS = Duration.ofDays(1).toMillis() << 22;
+
+    @Mock
+    MessageLogContentPartitionRepository repository;
+    @Mock
+    MessageRetentionConfig config;
+    @Mock
+    ClusterJobLock jobLock;
+    @Mock
+    MessageRetentionConfig.Partition partitionConfig;
+
+    SimpleMeterRegistry registry;
+    MessageContentPartitionJob job;
+
+    @BeforeEach
+    void createJob() {
+        registry = new SimpleMeterRegistry();
+        job = new MessageContentPartitionJob(repository, config, jobLock, registry);
+
+        // this node always wins the lock
+        lenient().when(jobLock.runExclusively(anyString(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+    }
+
+    @Test
+    void maintain_createsPartitionsAheadFromLastBound() throws SQLException {
+
+        prepPartitionConfig();
+
+        long legacyEnd = Snowflake.lowestIdAt(Instant.now().plus(Duration.ofDays(1)).plus(Duration.ofHours(1)));
+        when(repository.findPartitions()).thenReturn(List.of(
+                new Partition("message_log_content_legacy", Long.MIN_VALUE, legacyEnd, false)
+        ));
+        when(config.enabled()).thenReturn(false);
+
+        job.maintainPartitions();
+
+        // the first new partition continues the legacy one, the rest follow back to back
+        verify(repository).createPartition(startsWith("message_log_content_p"), eq(legacyEnd), eq(legacyEnd + DAY_OF_IDS));
+        verify(repository).createPartition(anyString(), eq(legacyEnd + DAY_OF_IDS), eq(legacyEnd + 2 * DAY_OF_IDS));
+        verify(repository, times(6)).createPartition(anyString(), anyLong(), anyLong());
+        verify(repository, never()).dropPartition(any());
+
+        assertThat(registry.get("papertrail.retention.partitions").gauge().value()).isEqualTo(7);
+        assertThat(registry.get("papertrail.retention.partitions.ahead.seconds").gauge().value())
+                .isGreaterThanOrEqualTo(Duration.ofDays(7).toSeconds());
+    }
+
+    @Test
+    void maintain_partitionMode_dropsOnlyFullyExpiredPartitions() throws SQLException {
+
+        prepPartitionConfig();
+
+        long cutoff = Snowflake.lowestIdAt(Instant.now().minus(Duration.ofDays(30)));
+        Partition expired = new Partition("message_log_content_p_expired", cutoff - 2 * DAY_OF_IDS, cutoff - DAY_OF_IDS, false);
+        Partition straddling = new Partition("message_log_content_p_straddling", cutoff - DAY_OF_IDS / 2, cutoff + DAY_OF_IDS / 2, false);
+        Partition current = new Partition("message_log_content_p_current", cutoff + DAY_OF_IDS / 2,
+                Snowflake.lowestIdAt(Instant.now().plus(Duration.ofDays(8))), false);
+
+        when(repository.findPartitions()).thenReturn(List.of(current, straddling, expired));
+        when(config.enabled()).thenReturn(true);
+        when(config.mode()).thenReturn(MessageRetentionConfig.Mode.PARTITION);
+        when(config.maxAge()).thenReturn(Duration.ofDays(30));
+
+        job.maintainPartitions();
+
+        verify(repository).dropPartition(expired);
+        verify(repository, never()).dropPartition(straddling);
+        verify(repository, never()).createPartition(anyString(), anyLong(), anyLong());
+        assertThat(registry.get("papertrail.retention.partitions.dropped").counter().count()).isEqualTo(1);
+        assertThat(registry.get("papertrail.retention.partitions").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void maintain_batchMode_keepsExpiredPartitions() throws SQLException {
+
+        prepPartitionConfig();
+
+        Partition expired = new Partition("message_log_content_p_expired", 0, DAY_OF_IDS, false);
+        when(repository.findPartitions()).thenReturn(List.of(expired));
+        when(config.enabled()).thenReturn(true);
+        when(config.mode()).thenReturn(MessageRetentionConfig.Mode.BATCH);
+
+        job.maintainPartitions();
+
+        verify(repository, never()).dropPartition(any());
+    }
+
+    @Test
+    void maintain_ranOnOtherNode_readsCoverageFromDatabase() throws SQLException {
+
+        when(jobLock.runExclusively(anyString(), any(), any())).thenReturn(false);
+        when(config.partition()).thenReturn(partitionConfig);
+        when(partitionConfig.interval()).thenReturn(Duration.ofDays(1));
+        when(repository.findPartitions()).thenReturn(List.of(new Partition("message_log_content_p_current", 0,
+                Snowflake.lowestIdAt(Instant.now().plus(Duration.ofHours(12))), false)));
+
+        job.maintainPartitions();
+
+        // less than an interval left is only reported, it does not take the node out of service
+        assertThat(registry.get("papertrail.retention.partitions.ahead.seconds").gauge().value())
+                .isBetween((double) Duration.ofHours(11).toSeconds(), (double) Duration.ofHours(12).toSeconds());
+        verify(repository, never()).createPartition(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void maintain_partitionsNeverRead_aheadUnknown() {
+
+        when(jobLock.runExclusively(anyString(), any(), any())).thenReturn(false);
+
+        job.maintainPartitions();
+
+        assertThat(registry.get("papertrail.retention.partitions.ahead.seconds").gauge().value()).isNaN();
+    }
+
+    @Test
+    void maintain_databaseError_swallowed() throws SQLException {
+
+        when(repository.findPartitions()).thenThrow(new SQLException("connection refused"));
+
+        job.maintainPartitions();
+
+        verify(repository, never()).createPartition(anyString(), anyLong(), anyLong());
+    }
+
+    private void prepPartitionConfig() {
+        when(config.partition()).thenReturn(partitionConfig);
+        when(partitionConfig.interval()).thenReturn(Duration.ofDays(1));
+        when(partitionConfig.ahead()).thenReturn(Duration.ofDays(7));
+    }
+}
@@ -0,0 +1,138 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.MessageRetentionConfig;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository;
+import io.github.eggy03.papertrail.api.repository.MessageLogContentPartitionRepository.Partition;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.service.retention.MessageContentRetentionJob;
+import io.github.eggy03.papertrail.api.service.scheduling.ClusterJobLock;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageContentRetentionJobUnitTest {
+
+    @Mock
+    MessageLogContentService service;
+    @Mock
+    MessageLogContentPartitionRepository partitionRepository;
+    @Mock
+    MessageRetentionConfig config;
+    @Mock
+    ClusterJobLock jobLock;
+
+    SimpleMeterRegistry registry;
+    MessageContentRetentionJob job;
+
+    @BeforeEach
+    void createJob() {
+        registry = new SimpleMeterRegistry();
+        job = new MessageContentRetentionJob(service, partitionRepository, config, jobLock, registry);
+
+        // this node always wins the lock
+        lenient().when(jobLock.runExclusively(anyString(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+    }
+
+    @Test
+    void cleanup_deletesBatchesUntilShortBatch() {
+
+        prepRun(Duration.ofMinutes(5));
+        when(service.deleteExpiredMessages(any(), eq(2))).thenReturn(2, 2, 1);
+
+        job.cleanupMessages();
+
+        verify(service, times(3)).deleteExpiredMessages(any(), eq(2));
+        assertThat(registry.get("papertrail.retention.deleted").counter().count()).isEqualTo(5);
+        assertThat(registry.get("papertrail.retention.caught.up").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void cleanup_outOfTime_leavesRestForNextRun() {
+
+        prepRun(Duration.ZERO);
+        when(service.deleteExpiredMessages(any(), eq(2))).thenReturn(2);
+
+        job.cleanupMessages();
+
+        verify(service, times(1)).deleteExpiredMessages(any(), eq(2));
+        assertThat(registry.get("papertrail.retention.last.run.deleted").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("papertrail.retention.caught.up").gauge().value()).isZero();
+    }
+
+    @Test
+    void cleanup_disabled_doesNothing() {
+
+        when(config.enabled()).thenReturn(false);
+
+        job.cleanupMessages();
+
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void cleanup_partitionMode_doesNothing() throws SQLException {
+
+        when(config.enabled()).thenReturn(true);
+        when(config.mode()).thenReturn(MessageRetentionConfig.Mode.PARTITION);
+        when(config.maxAge()).thenReturn(Duration.ofDays(30));
+        when(partitionRepository.findPartitions()).thenReturn(List.of(new Partition("message_log_content_p20260101_0000", 1L, 2L, false)));
+
+        job.cleanupMessages();
+
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void cleanup_partitionModeWithLegacyPartition_deletesUpToItsEnd() throws SQLException {
+
+        Instant legacyEnd = Instant.now().minus(Duration.ofDays(40));
+        when(config.enabled()).thenReturn(true);
+        when(config.mode()).thenReturn(MessageRetentionConfig.Mode.PARTITION);
+        when(config.maxAge()).thenReturn(Duration.ofDays(30));
+        when(config.batchSize()).thenReturn(2);
+        when(config.maxRunTime()).thenReturn(Duration.ofMinutes(5));
+        when(partitionRepository.findPartitions()).thenReturn(List.of(
+                new Partition("message_log_content_legacy", Long.MIN_VALUE, Snowflake.lowestIdAt(legacyEnd), false)));
+        when(service.deleteExpiredMessages(any(), eq(2))).thenReturn(1);
+
+        job.cleanupMessages();
+
+        // expired messages past the legacy partition are left to the partition drops
+        verify(service).deleteExpiredMessages(eq(legacyEnd.truncatedTo(ChronoUnit.MILLIS).atOffset(ZoneOffset.UTC)), eq(2));
+    }
+
+    private void prepRun(Duration maxRunTime) {
+        when(config.enabled()).thenReturn(true);
+        when(config.mode()).thenReturn(MessageRetentionConfig.Mode.BATCH);
+        when(config.maxAge()).thenReturn(Duration.ofDays(30));
+        when(config.batchSize()).thenReturn(2);
+        when(config.maxRunTime()).thenReturn(maxRunTime);
+        if (!maxRunTime.isZero())
+            when(config.pause()).thenReturn(Duration.ofMillis(1));
+    }
+}
@@ -1,12 +1,21 @@
 package unit;
 
+import io.github.eggy03.papertrail.api.cache.NearCache;
+import io.github.eggy03.papertrail.api.dto.BatchItemStatus;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
 import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentUpsertResultDTO;
 import io.github.eggy03.papertrail.api.entity.MessageLogContent;
 import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.exceptions.MessageOutOfRangeException;
 import io.github.eggy03.papertrail.api.exceptions.MessageSaveFailureException;
 import io.github.eggy03.papertrail.api.mapper.MessageLogContentMapper;
 import io.github.eggy03.papertrail.api.repository.MessageLogContentRepository;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
 import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Path;
+import jakarta.validation.Validator;
 import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,13 +23,24 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -33,13 +53,19 @@ class MessageLogContentServiceUnitTest {
     static final String TEST_MESSAGE_CONTENT = "message";
     static final Long TEST_AUTHOR_ID = 1302148573926148097L;
     // prep a valid Entity
-    final MessageLogContent validEntity = new MessageLogContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID, null);
+    final MessageLogContent validEntity = new MessageLogContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
     // prep a valid DTO
     final MessageLogContentDTO validDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
     @Mock
     MessageLogContentRepository repository;
     @Mock
     MessageLogContentMapper mapper;
+    @Mock
+    Validator validator;
+    @Mock
+    NearCache<MessageLogContentDTO> cache;
+    @Mock
+    ReadReplicaRouter replicaRouter;
     @InjectMocks
     MessageLogContentService service;
 
@@ -51,6 +77,7 @@ class MessageLogContentServiceUnitTest {
         service.saveMessage(validDTO);
 
         verify(repository).persistAndFlush(validEntity);
+        verify(cache).put(TEST_MESSAGE_ID, validDTO);
         verifyNoMoreInteractions(repository, mapper);
     }
 
@@ -64,31 +91,141 @@ class MessageLogContentServiceUnitTest {
 
         verify(mapper).toEntity(validDTO);
         verify(repository).persistAndFlush(validEntity);
+        verify(cache, never()).put(any(), any());
         verifyNoMoreInteractions(mapper, repository);
     }
 
+    @Test
+    void saveMessage_noPartitionForId_outOfRange() {
+
+        // what PostgreSQL reports once the partition that would hold the ID has been dropped
+        ConstraintViolationException noPartition = new ConstraintViolationException("could not execute statement",
+                new SQLException("no partition of relation \"message_log_content_table\" found for row", "23514"), null);
+
+        when(mapper.toEntity(validDTO)).thenReturn(validEntity);
+        doThrow(noPartition).when(repository).persistAndFlush(validEntity);
+
+        assertThrows(MessageOutOfRangeException.class, () -> service.saveMessage(validDTO));
+
+        verify(cache, never()).put(any(), any());
+    }
+
+    @Test
+    void saveMessages_success() {
+
+        MessageLogContentDTO secondDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+        MessageLogContent secondEntity = new MessageLogContent(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+
+        when(repository.findExistingIds(Set.of(TEST_MESSAGE_ID, TEST_MESSAGE_ID + 1))).thenReturn(Set.of());
+        when(mapper.toEntity(validDTO)).thenReturn(validEntity);
+        when(mapper.toEntity(secondDTO)).thenReturn(secondEntity);
+
+        List<MessageLogContentBatchResultDTO> results = service.saveMessages(List.of(validDTO, secondDTO));
+
+        assertThat(results)
+                .extracting(MessageLogContentBatchResultDTO::getMessageId, MessageLogContentBatchResultDTO::getStatus)
+                .containsExactly(
+                        tuple(TEST_MESSAGE_ID, BatchItemStatus.CREATED),
+                        tuple(TEST_MESSAGE_ID + 1, BatchItemStatus.CREATED)
+                );
+
+        verify(repository).persist(validEntity);
+        verify(repository).persist(secondEntity);
+        verify(repository).flush();
+    }
+
+    @Test
+    void saveMessages_duplicatesAndInvalidItems_doNotAbortBatch() {
+
+        MessageLogContentDTO existingDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+        MessageLogContentDTO invalidDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 2, null, TEST_AUTHOR_ID);
+
+        @SuppressWarnings("unchecked")
+        ConstraintViolation<MessageLogContentDTO> violation = mock(ConstraintViolation.class);
+        Path path = mock(Path.class);
+        when(path.toString()).thenReturn("messageContent");
+        when(violation.getPropertyPath()).thenReturn(path);
+        when(violation.getMessage()).thenReturn("Message content cannot be null");
+        when(validator.validate(any(MessageLogContentDTO.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0) == invalidDTO ? Set.of(violation) : Set.of());
+
+        when(repository.findExistingIds(Set.of(TEST_MESSAGE_ID, TEST_MESSAGE_ID + 1))).thenReturn(Set.of(TEST_MESSAGE_ID + 1));
+        when(mapper.toEntity(validDTO)).thenReturn(validEntity);
+
+        List<MessageLogContentBatchResultDTO> results = service.saveMessages(Arrays.asList(validDTO, validDTO, existingDTO, invalidDTO, null));
+
+        assertThat(results)
+                .extracting(MessageLogContentBatchResultDTO::getStatus)
+                .containsExactly(BatchItemStatus.CREATED, BatchItemStatus.DUPLICATE, BatchItemStatus.DUPLICATE, BatchItemStatus.INVALID, BatchItemStatus.INVALID);
+        assertThat(results.get(3).getReason()).isEqualTo("messageContent: Message content cannot be null");
+
+        verify(repository).persist(validEntity);
+        verify(repository).flush();
+        verify(mapper, never()).toEntity(existingDTO);
+        verify(mapper, never()).toEntity(invalidDTO);
+    }
+
+    @Test
+    void saveMessages_concurrentConflict_conflicts() {
+
+        when(repository.findExistingIds(Set.of(TEST_MESSAGE_ID))).thenReturn(Set.of());
+        when(mapper.toEntity(validDTO)).thenReturn(validEntity);
+        doThrow(ConstraintViolationException.class).when(repository).flush();
+
+        assertThrows(MessageSaveFailureException.class, () -> service.saveMessages(List.of(validDTO)));
+
+        verify(repository).persist(validEntity);
+    }
+
     @Test
     void getMessage_success() {
 
-        when(repository.findByIdOptional(TEST_MESSAGE_ID)).thenReturn(Optional.of(validEntity));
-        when(mapper.toDTO(validEntity)).thenReturn(validDTO);
+        passThroughCache();
+        when(repository.findDTOById(TEST_MESSAGE_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.of(validDTO), false));
+
+        MessageLogContentDTO result = service.getMessage(TEST_MESSAGE_ID);
+        assertThat(result).isEqualTo(validDTO);
+
+        verify(repository).findDTOById(TEST_MESSAGE_ID);
+        verify(mapper, never()).toDTO(any());
+        verifyNoMoreInteractions(mapper, repository);
+    }
+
+    @Test
+    void getMessage_readFromReplica_cachedBriefly() {
+
+        ReadReplicaRouter.Read<MessageLogContentDTO> read = new ReadReplicaRouter.Read<>(Optional.of(validDTO), true);
+        when(repository.findDTOById(TEST_MESSAGE_ID)).thenReturn(read);
+        when(replicaRouter.staleFor(read)).thenReturn(Duration.ofSeconds(5));
+        when(cache.getOrLoad(eq(TEST_MESSAGE_ID), any())).thenAnswer(invocation -> {
+            NearCache.Loaded<MessageLogContentDTO> loaded = invocation.<Function<Long, NearCache.Loaded<MessageLogContentDTO>>>getArgument(1).apply(TEST_MESSAGE_ID);
+            assertThat(loaded.staleFor()).isEqualTo(Duration.ofSeconds(5)); // may be up to the max replica lag old
+            return loaded.value();
+        });
+
+        assertThat(service.getMessage(TEST_MESSAGE_ID)).isEqualTo(validDTO);
+    }
+
+    @Test
+    void getMessage_cached_skipsDatabase() {
+
+        when(cache.getOrLoad(eq(TEST_MESSAGE_ID), any())).thenReturn(validDTO);
 
         MessageLogContentDTO result = service.getMessage(TEST_MESSAGE_ID);
         assertThat(result).isEqualTo(validDTO);
 
-        verify(repository).findByIdOptional(TEST_MESSAGE_ID);
-        verify(mapper).toDTO(validEntity);
         verifyNoMoreInteractions(mapper, repository);
     }
 
     @Test
     void getMessage_notSaved_notFound() {
 
-        when(repository.findByIdOptional(TEST_MESSAGE_ID)).thenReturn(Optional.empty());
+        passThroughCache();
+        when(repository.findDTOById(TEST_MESSAGE_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.empty(), false));
 
         assertThrows(MessageNotFoundException.class, () -> service.getMessage(TEST_MESSAGE_ID));
 
-        verify(repository).findByIdOptional(TEST_MESSAGE_ID);
+        verify(repository).findDTOById(TEST_MESSAGE_ID);
         verify(mapper, never()).toDTO(any());
         verifyNoMoreInteractions(mapper, repository);
     }
@@ -96,26 +233,61 @@ class MessageLogContentServiceUnitTest {
     @Test
     void updateMessage_success() {
 
-        MessageLogContent oldEntity = new MessageLogContent(TEST_MESSAGE_ID, "oldMessage", 123L, null);
-        when(repository.findByIdOptional(TEST_MESSAGE_ID)).thenReturn(Optional.of(oldEntity));
+        when(repository.updateContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID)).thenReturn(true);
 
         service.updateMessage(TEST_MESSAGE_ID, validDTO);
-        assertThat(oldEntity.getMessageContent()).isEqualTo(validDTO.getMessageContent());
-        assertThat(oldEntity.getAuthorId()).isEqualTo(validDTO.getAuthorId());// confirm that old entity was mutated with new dto data
 
-        verify(repository).findByIdOptional(TEST_MESSAGE_ID);
+        verify(repository).updateContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+        verify(cache).put(TEST_MESSAGE_ID, validDTO);
+        verify(replicaRouter).recordWrite(TEST_MESSAGE_ID); // views of the message stay on the primary for a while
         verifyNoMoreInteractions(repository);
 
     }
 
+    @Test
+    void upsertMessage_created() {
+
+        when(repository.upsert(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID)).thenReturn(true);
+
+        MessageLogContentUpsertResultDTO result = service.upsertMessage(validDTO);
+
+        assertThat(result.isCreated()).isTrue();
+        assertThat(result.getMessage()).isEqualTo(validDTO);
+        verify(cache).put(TEST_MESSAGE_ID, validDTO);
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void upsertMessage_updated_noPriorRead() {
+
+        when(repository.upsert(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID)).thenReturn(false);
+
+        assertThat(service.upsertMessage(validDTO).isCreated()).isFalse();
+
+        verify(repository, never()).findByIdOptional(any());
+        verify(cache).put(TEST_MESSAGE_ID, validDTO);
+    }
+
+    @Test
+    void upsertMessage_noPartitionForId_outOfRange() {
+
+        when(repository.upsert(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID)).thenThrow(new ConstraintViolationException("could not execute statement",
+                new SQLException("no partition of relation \"message_log_content_table\" found for row", "23514"), null));
+
+        assertThrows(MessageOutOfRangeException.class, () -> service.upsertMessage(validDTO));
+
+        verify(cache, never()).put(any(), any());
+    }
+
     @Test
     void updateMessage_doesNotExist() {
 
-        when(repository.findByIdOptional(TEST_MESSAGE_ID)).thenReturn(Optional.empty());
+        when(repository.updateContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID)).thenReturn(false);
 
         assertThrows(MessageNotFoundException.class, () -> service.updateMessage(TEST_MESSAGE_ID, validDTO));
 
-        verify(repository).findByIdOptional(TEST_MESSAGE_ID);
+        verify(repository).updateContent(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+        verify(cache, never()).put(any(), any());
         verifyNoMoreInteractions(repository);
     }
 
@@ -123,22 +295,42 @@ class MessageLogContentServiceUnitTest {
     @Test
     void deleteMessage_success() {
 
-        when(repository.deleteById(TEST_MESSAGE_ID)).thenReturn(true);
+        when(repository.deleteByMessageId(TEST_MESSAGE_ID)).thenReturn(true);
 
         assertDoesNotThrow(() -> service.deleteMessage(TEST_MESSAGE_ID));
 
-        verify(repository).deleteById(TEST_MESSAGE_ID);
+        verify(repository).deleteByMessageId(TEST_MESSAGE_ID);
+        verify(cache).invalidate(TEST_MESSAGE_ID);
         verifyNoMoreInteractions(repository);
     }
 
     @Test
     void deleteMessage_doesNotExist_notFound() {
 
-        when(repository.deleteById(TEST_MESSAGE_ID)).thenReturn(false);
+        when(repository.deleteByMessageId(TEST_MESSAGE_ID)).thenReturn(false);
 
         assertThrows(MessageNotFoundException.class, () -> service.deleteMessage(TEST_MESSAGE_ID));
 
-        verify(repository).deleteById(TEST_MESSAGE_ID);
+        verify(repository).deleteByMessageId(TEST_MESSAGE_ID);
+        verify(cache, never()).invalidate(any());
         verifyNoMoreInteractions(repository);
     }
+
+    @Test
+    void deleteExpiredMessages_evictsDeletedFromCache() {
+
+        OffsetDateTime cutoff = OffsetDateTime.now(ZoneOffset.UTC).minusDays(30);
+        when(repository.deleteOlderThan(cutoff, 2)).thenReturn(List.of(TEST_MESSAGE_ID, TEST_MESSAGE_ID + 1));
+
+        assertThat(service.deleteExpiredMessages(cutoff, 2)).isEqualTo(2);
+
+        verify(cache).invalidateAll(List.of(TEST_MESSAGE_ID, TEST_MESSAGE_ID + 1));
+        verifyNoMoreInteractions(repository);
+    }
+
+    // behave like an empty cache, so reads go straight to the loader
+    private void passThroughCache() {
+        when(cache.getOrLoad(eq(TEST_MESSAGE_ID), any())).thenAnswer(invocation ->
+                invocation.<Function<Long, NearCache.Loaded<MessageLogContentDTO>>>getArgument(1).apply(TEST_MESSAGE_ID).value());
+    }
 }
@@ -0,0 +1,149 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.WriteBehindConfig;
+import io.github.eggy03.papertrail.api.dto.BatchItemStatus;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentBatchResultDTO;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.exceptions.MessageBufferFullException;
+import io.github.eggy03.papertrail.api.exceptions.MessageSaveFailureException;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.service.writebehind.MessageLogContentWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageLogContentWriteBufferUnitTest {
+
+    static final Long TEST_MESSAGE_ID = 1302148573926148096L;
+    static final String TEST_MESSAGE_CONTENT = "message";
+    static final Long TEST_AUTHOR_ID = 1302148573926148097L;
+    // prep a valid DTO
+    final MessageLogContentDTO validDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+    @Mock
+    MessageLogContentService service;
+    @Mock
+    WriteBehindConfig config;
+
+    MessageLogContentWriteBuffer buffer;
+
+    @BeforeEach
+    void createBuffer() {
+        when(config.capacity()).thenReturn(1);
+        buffer = new MessageLogContentWriteBuffer(service, config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void enqueue_pendingSaveIsVisible() {
+
+        buffer.enqueue(validDTO);
+
+        assertThat(buffer.findPending(TEST_MESSAGE_ID)).contains(validDTO);
+        verifyNoInteractions(service); // nothing is written until the drainer flushes
+    }
+
+    @Test
+    void enqueue_alreadyPending_conflicts() {
+
+        buffer.enqueue(validDTO);
+
+        assertThrows(MessageSaveFailureException.class, () -> buffer.enqueue(validDTO));
+    }
+
+    @Test
+    void enqueue_conflict_doesNotTakeABufferSlot() {
+
+        when(config.capacity()).thenReturn(2);
+        buffer = new MessageLogContentWriteBuffer(service, config, new SimpleMeterRegistry());
+        MessageLogContentDTO secondDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+
+        buffer.enqueue(validDTO);
+        assertThrows(MessageSaveFailureException.class, () -> buffer.enqueue(validDTO));
+        buffer.enqueue(secondDTO);
+
+        assertThat(buffer.findPending(TEST_MESSAGE_ID + 1)).contains(secondDTO);
+    }
+
+    @Test
+    void enqueue_bufferFull_rejected() {
+
+        buffer.enqueue(validDTO);
+        MessageLogContentDTO secondDTO = new MessageLogContentDTO(TEST_MESSAGE_ID + 1, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+
+        assertThrows(MessageBufferFullException.class, () -> buffer.enqueue(secondDTO));
+        assertThat(buffer.findPending(TEST_MESSAGE_ID + 1)).isEmpty();
+    }
+
+    @Test
+    void replacePending_updatesBufferedSave() {
+
+        MessageLogContentDTO updatedDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, "updatedMessage", TEST_AUTHOR_ID);
+
+        assertThat(buffer.replacePending(TEST_MESSAGE_ID, updatedDTO)).isFalse();
+
+        buffer.enqueue(validDTO);
+
+        assertThat(buffer.replacePending(TEST_MESSAGE_ID, updatedDTO)).isTrue();
+        assertThat(buffer.findPending(TEST_MESSAGE_ID)).contains(updatedDTO);
+    }
+
+    @Test
+    void upsertPending_replacesBufferedSave() {
+
+        MessageLogContentDTO upsertedDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, "upsertedMessage", TEST_AUTHOR_ID);
+
+        assertThat(buffer.upsertPending(TEST_MESSAGE_ID, upsertedDTO)).isFalse();
+
+        buffer.enqueue(validDTO);
+
+        assertThat(buffer.upsertPending(TEST_MESSAGE_ID, upsertedDTO)).isTrue();
+        assertThat(buffer.findPending(TEST_MESSAGE_ID)).contains(upsertedDTO);
+    }
+
+    @Test
+    void discardPending_removesBufferedSave() {
+
+        assertThat(buffer.discardPending(TEST_MESSAGE_ID)).isFalse();
+
+        buffer.enqueue(validDTO);
+
+        assertThat(buffer.discardPending(TEST_MESSAGE_ID)).isTrue();
+        assertThat(buffer.findPending(TEST_MESSAGE_ID)).isEmpty();
+    }
+
+    @Test
+    void enqueueDiscardEnqueue_flushWritesSecondSaveOnly() throws InterruptedException {
+
+        when(config.batchSize()).thenReturn(10);
+        when(config.maxDelay()).thenReturn(Duration.ofMillis(1));
+        when(config.shutdownTimeout()).thenReturn(Duration.ofSeconds(5));
+        MessageLogContentDTO savedAgainDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, "savedAgain", TEST_AUTHOR_ID);
+        when(service.saveMessages(List.of(savedAgainDTO)))
+                .thenReturn(List.of(new MessageLogContentBatchResultDTO(TEST_MESSAGE_ID, BatchItemStatus.CREATED, null)));
+
+        buffer.enqueue(validDTO);
+        buffer.discardPending(TEST_MESSAGE_ID);
+        buffer.enqueue(savedAgainDTO); // the discarded save no longer takes the only queue slot
+
+        buffer.onStart(null);
+        buffer.onStop(null); // drains the queue
+
+        // written once, and the discarded save is not deleted from the DB afterwards
+        verify(service).saveMessages(List.of(savedAgainDTO));
+        verifyNoMoreInteractions(service);
+        assertThat(buffer.findPending(TEST_MESSAGE_ID)).isEmpty();
+    }
+}
@@ -1,11 +1,14 @@
 package unit;
 
+import io.github.eggy03.papertrail.api.cache.NearCache;
 import io.github.eggy03.papertrail.api.dto.MessageLogRegistrationDTO;
 import io.github.eggy03.papertrail.api.entity.MessageLogRegistration;
 import io.github.eggy03.papertrail.api.exceptions.GuildNotFoundException;
 import io.github.eggy03.papertrail.api.exceptions.GuildRegistrationFailureException;
 import io.github.eggy03.papertrail.api.mapper.MessageLogRegistrationMapper;
 import io.github.eggy03.papertrail.api.repository.MessageLogRegistrationRepository;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
+import io.github.eggy03.papertrail.api.service.GuildLogConfigurationService;
 import io.github.eggy03.papertrail.api.service.MessageLogRegistrationService;
 import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
@@ -14,12 +17,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -39,6 +47,12 @@ class MessageLogRegistrationServiceUnitTest {
     MessageLogRegistrationRepository repository;
     @Mock
     MessageLogRegistrationMapper mapper;
+    @Mock
+    NearCache<MessageLogRegistrationDTO> cache;
+    @Mock
+    GuildLogConfigurationService configurationService;
+    @Mock
+    ReadReplicaRouter replicaRouter;
     @InjectMocks
     MessageLogRegistrationService service;
 
@@ -50,6 +64,8 @@ class MessageLogRegistrationServiceUnitTest {
         service.registerGuild(validDTO);
 
         verify(repository).persistAndFlush(validEntity);
+        verify(cache).put(TEST_GUILD_ID, validDTO);
+        verify(configurationService).invalidate(TEST_GUILD_ID);
         verifyNoMoreInteractions(repository, mapper);
     }
 
@@ -63,45 +79,84 @@ class MessageLogRegistrationServiceUnitTest {
 
         verify(mapper).toEntity(validDTO);
         verify(repository).persistAndFlush(validEntity);
+        verify(cache, never()).put(any(), any());
         verifyNoMoreInteractions(mapper, repository);
     }
 
     @Test
     void getGuild_success() {
 
-        when(repository.findByIdOptional(TEST_GUILD_ID)).thenReturn(Optional.of(validEntity));
-        when(mapper.toDTO(validEntity)).thenReturn(validDTO);
+        passThroughCache();
+        when(repository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.of(validDTO), false));
+
+        MessageLogRegistrationDTO result = service.viewRegisteredGuild(TEST_GUILD_ID);
+        assertThat(result).isEqualTo(validDTO);
+
+        verify(repository).findDTOById(TEST_GUILD_ID);
+        verify(mapper, never()).toDTO(any());
+        verifyNoMoreInteractions(mapper, repository);
+    }
+
+    @Test
+    void getGuild_cached_skipsDatabase() {
+
+        when(cache.getOrLoad(eq(TEST_GUILD_ID), any())).thenReturn(validDTO);
 
         MessageLogRegistrationDTO result = service.viewRegisteredGuild(TEST_GUILD_ID);
         assertThat(result).isEqualTo(validDTO);
 
-        verify(repository).findByIdOptional(TEST_GUILD_ID);
-        verify(mapper).toDTO(validEntity);
         verifyNoMoreInteractions(mapper, repository);
     }
 
     @Test
     void getGuild_notRegistered_notFound() {
 
-        when(repository.findByIdOptional(TEST_GUILD_ID)).thenReturn(Optional.empty());
+        passThroughCache();
+        when(repository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.empty(), false));
 
         assertThrows(GuildNotFoundException.class, () -> service.viewRegisteredGuild(TEST_GUILD_ID));
 
-        verify(repository).findByIdOptional(TEST_GUILD_ID);
+        verify(repository).findDTOById(TEST_GUILD_ID);
         verify(mapper, never()).toDTO(any());
         verifyNoMoreInteractions(mapper, repository);
     }
 
+    @Test
+    void findGuild_notRegistered_empty() {
+
+        passThroughCache();
+        when(repository.findDTOById(TEST_GUILD_ID)).thenReturn(new ReadReplicaRouter.Read<>(Optional.empty(), false));
+
+        assertThat(service.findRegisteredGuild(TEST_GUILD_ID)).isEmpty();
+
+        verify(repository).findDTOById(TEST_GUILD_ID);
+        verifyNoMoreInteractions(mapper, repository);
+    }
+
+    @Test
+    void getGuilds_loadsMissesWithOneQuery() {
+
+        when(cache.getAll(eq(List.of(TEST_GUILD_ID, TEST_GUILD_ID + 1)), any())).thenAnswer(invocation ->
+                invocation.<Function<Set<Long>, Map<Long, MessageLogRegistrationDTO>>>getArgument(1).apply(Set.of(TEST_GUILD_ID, TEST_GUILD_ID + 1)));
+        when(repository.findDTOsByGuildIds(Set.of(TEST_GUILD_ID, TEST_GUILD_ID + 1))).thenReturn(List.of(validDTO));
+
+        Map<Long, MessageLogRegistrationDTO> result = service.viewRegisteredGuilds(List.of(TEST_GUILD_ID, TEST_GUILD_ID + 1));
+        assertThat(result).containsOnly(Map.entry(TEST_GUILD_ID, validDTO));
+
+        verify(repository).findDTOsByGuildIds(Set.of(TEST_GUILD_ID, TEST_GUILD_ID + 1));
+        verifyNoMoreInteractions(repository);
+    }
+
     @Test
     void updateGuild_success() {
 
-        MessageLogRegistration oldEntity = new MessageLogRegistration(TEST_GUILD_ID, 123L);
-        when(repository.findByIdOptional(TEST_GUILD_ID)).thenReturn(Optional.of(oldEntity));
+        when(repository.updateChannelId(TEST_GUILD_ID, validDTO.getChannelId())).thenReturn(true);
 
         service.updateRegisteredGuild(TEST_GUILD_ID, validDTO);
-        assertThat(oldEntity.getChannelId()).isEqualTo(validDTO.getChannelId()); // confirm that old entity was mutated with new dto data
 
-        verify(repository).findByIdOptional(TEST_GUILD_ID);
+        verify(repository).updateChannelId(TEST_GUILD_ID, validDTO.getChannelId());
+        verify(cache).invalidate(TEST_GUILD_ID);
+        verify(configurationService).invalidate(TEST_GUILD_ID);
         verifyNoMoreInteractions(repository);
 
     }
@@ -109,11 +164,12 @@ class MessageLogRegistrationServiceUnitTest {
     @Test
     void updateGuild_doesNotExist() {
 
-        when(repository.findByIdOptional(TEST_GUILD_ID)).thenReturn(Optional.empty());
+        when(repository.updateChannelId(TEST_GUILD_ID, validDTO.getChannelId())).thenReturn(false);
 
         assertThrows(GuildNotFoundException.class, () -> service.updateRegisteredGuild(TEST_GUILD_ID, validDTO));
 
-        verify(repository).findByIdOptional(TEST_GUILD_ID);
+        verify(repository).updateChannelId(TEST_GUILD_ID, validDTO.getChannelId());
+        verify(cache, never()).invalidate(any());
         verifyNoMoreInteractions(repository);
     }
 
@@ -121,22 +177,31 @@ class MessageLogRegistrationServiceUnitTest {
     @Test
     void deleteGuild_success() {
 
-        when(repository.deleteById(TEST_GUILD_ID)).thenReturn(true);
+        when(repository.deleteByGuildId(TEST_GUILD_ID)).thenReturn(true);
 
         assertDoesNotThrow(() -> service.deleteRegisteredGuild(TEST_GUILD_ID));
 
-        verify(repository).deleteById(TEST_GUILD_ID);
+        verify(repository).deleteByGuildId(TEST_GUILD_ID);
+        verify(cache).invalidate(TEST_GUILD_ID);
+        verify(configurationService).invalidate(TEST_GUILD_ID);
         verifyNoMoreInteractions(repository);
     }
 
     @Test
     void deleteGuild_doesNotExist_notFound() {
 
-        when(repository.deleteById(TEST_GUILD_ID)).thenReturn(false);
+        when(repository.deleteByGuildId(TEST_GUILD_ID)).thenReturn(false);
 
         assertThrows(GuildNotFoundException.class, () -> service.deleteRegisteredGuild(TEST_GUILD_ID));
 
-        verify(repository).deleteById(TEST_GUILD_ID);
+        verify(repository).deleteByGuildId(TEST_GUILD_ID);
+        verify(cache, never()).invalidate(any());
         verifyNoMoreInteractions(repository);
     }
+
+    // behave like an empty cache, so reads go straight to the loader
+    private void passThroughCache() {
+        when(cache.getOrLoad(eq(TEST_GUILD_ID), any())).thenAnswer(invocation ->
+                invocation.<Function<Long, NearCache.Loaded<MessageLogRegistrationDTO>>>getArgument(1).apply(TEST_GUILD_ID).value());
+    }
 }
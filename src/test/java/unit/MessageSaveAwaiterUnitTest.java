@@ -0,0 +1,80 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.MessageViewConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.service.locks.MessageSaveAwaiter;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageSaveAwaiterUnitTest {
+
+    static final Long TEST_MESSAGE_ID = 1302148573926148096L;
+    static final String TEST_MESSAGE_CONTENT = "message";
+    static final Long TEST_AUTHOR_ID = 1302148573926148097L;
+    // prep a valid DTO
+    final MessageLogContentDTO validDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, TEST_MESSAGE_CONTENT, TEST_AUTHOR_ID);
+    @Mock
+    MessageLogContentService delegate;
+    @Mock
+    MessageViewConfig config;
+    @InjectMocks
+    MessageSaveAwaiter awaiter;
+
+    @Test
+    void getMessage_savedWhileWaiting_success() {
+
+        Long recentMessageId = Snowflake.lowestIdAt(Instant.now());
+        when(config.waitForSave()).thenReturn(Duration.ofSeconds(5));
+        when(config.waitForSaveMaxAge()).thenReturn(Duration.ofSeconds(5));
+        when(config.pollInterval()).thenReturn(Duration.ofMillis(1));
+        when(delegate.getMessage(recentMessageId))
+                .thenThrow(new MessageNotFoundException("Message hasn't been saved yet"))
+                .thenReturn(validDTO);
+
+        assertThat(awaiter.getMessage(recentMessageId)).isEqualTo(validDTO);
+
+        verify(delegate, times(2)).getMessage(recentMessageId);
+    }
+
+    @Test
+    void getMessage_oldMessage_notFoundWithoutWaiting() {
+
+        when(config.waitForSaveMaxAge()).thenReturn(Duration.ofSeconds(5));
+        when(config.pollInterval()).thenReturn(Duration.ofMillis(1));
+        when(delegate.getMessage(TEST_MESSAGE_ID)).thenThrow(new MessageNotFoundException("Message hasn't been saved yet"));
+
+        assertThrows(MessageNotFoundException.class, () -> awaiter.getMessage(TEST_MESSAGE_ID));
+
+        verify(delegate).getMessage(TEST_MESSAGE_ID); // created long ago, a missing save is not waited for
+    }
+
+    @Test
+    void getMessage_waitingDisabled_notFound() {
+
+        Long recentMessageId = Snowflake.lowestIdAt(Instant.now());
+        when(config.waitForSave()).thenReturn(Duration.ZERO);
+        when(config.waitForSaveMaxAge()).thenReturn(Duration.ofSeconds(5));
+        when(config.pollInterval()).thenReturn(Duration.ofMillis(1));
+        when(delegate.getMessage(recentMessageId)).thenThrow(new MessageNotFoundException("Message hasn't been saved yet"));
+
+        assertThrows(MessageNotFoundException.class, () -> awaiter.getMessage(recentMessageId));
+
+        verify(delegate).getMessage(recentMessageId);
+    }
+}
@@ -0,0 +1,367 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.cache.NearCache;
+import io.github.eggy03.papertrail.api.cache.NearCacheManager;
+import io.github.eggy03.papertrail.api.cache.NearCacheTestSupport;
+import io.github.eggy03.papertrail.api.configuration.NearCacheConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.util.Snowflake;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.redis.datasource.value.ValueCommands;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheUnitTest {
+
+    static final Long TEST_MESSAGE_ID = 1302148573926148096L;
+    static final String REMOTE_KEY = "papertrail:cache:messageContent:" + TEST_MESSAGE_ID;
+    static final String VERSION_KEY = REMOTE_KEY + ":version";
+    static final String REMOTE_TTL = String.valueOf(Duration.ofDays(30).toSeconds());
+    // prep a valid DTO
+    final MessageLogContentDTO validDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, "message", 1302148573926148097L);
+    @Mock
+    RedisDataSource redis;
+    @Mock
+    ValueCommands<String, MessageLogContentDTO> remote;
+    @Mock
+    PubSubCommands<String> pubSub;
+    @Mock
+    NearCacheConfig config;
+    @Mock
+    NearCacheConfig.CacheSpec spec;
+    @Mock
+    TransactionSynchronizationRegistry transactions;
+
+    NearCache<MessageLogContentDTO> cache;
+
+    @BeforeEach
+    void createCache() {
+        when(redis.pubsub(String.class)).thenReturn(pubSub);
+        when(redis.value(MessageLogContentDTO.class)).thenReturn(remote);
+        when(config.localEnabled()).thenReturn(true);
+        when(config.caches()).thenReturn(Map.of("messageContent", spec));
+        when(spec.maximumSize()).thenReturn(100L);
+        when(spec.localTtl()).thenReturn(Duration.ofMinutes(10));
+        when(spec.remoteTtl()).thenReturn(Duration.ofDays(30));
+        when(spec.negativeTtl()).thenReturn(Optional.of(Duration.ofSeconds(30)));
+
+        NearCacheManager manager = new NearCacheManager(redis, config, new SimpleMeterRegistry(), transactions);
+        cache = manager.create("messageContent", MessageLogContentDTO.class);
+    }
+
+    @Test
+    void get_miss_loadsAndFillsBothTiers() {
+
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        })).isEqualTo(validDTO);
+        // second read is answered by the local tier
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        })).isEqualTo(validDTO);
+
+        assertThat(loads).hasValue(1);
+        verify(remote).get(REMOTE_KEY);
+        verify(redis).execute("GET", VERSION_KEY);
+        // filled with SET NX, and only if the version read before the load is unchanged
+        verify(redis).execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), eq(""), anyString(), eq(REMOTE_TTL));
+    }
+
+    @Test
+    void getOrLoad_possiblyOutdated_onlyFillsLocalTier() {
+
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.getOrLoad(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return new NearCache.Loaded<>(validDTO, Duration.ofSeconds(5));
+        })).isEqualTo(validDTO);
+        // answered by the local tier until the 5 seconds are up
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        })).isEqualTo(validDTO);
+
+        assertThat(loads).hasValue(1);
+        // other nodes must not pick it up from Redis
+        verify(redis, never()).execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), eq(""), anyString(), eq(REMOTE_TTL));
+    }
+
+    @Test
+    void clearLocal_nextReadGoesToRedis() {
+
+        cache.get(TEST_MESSAGE_ID, id -> validDTO);
+        NearCacheTestSupport.clearLocal(cache);
+        when(remote.get(REMOTE_KEY)).thenReturn(validDTO);
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            throw new AssertionError("loader must not be called");
+        })).isEqualTo(validDTO);
+        verify(remote, times(2)).get(REMOTE_KEY);
+        verifyNoInteractions(pubSub); // only this node's tier was emptied
+    }
+
+    @Test
+    void get_loadRacesWriteOnAnotherNode_notCached() {
+
+        Response versionChanged = mock(Response.class);
+        when(versionChanged.toInteger()).thenReturn(0);
+        when(redis.execute("GET", VERSION_KEY)).thenReturn(null); // no version yet
+        when(redis.execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), eq(""), anyString(), eq(REMOTE_TTL)))
+                .thenReturn(versionChanged);
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> validDTO)).isEqualTo(validDTO);
+
+        // the loaded value was not cached locally either
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        });
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void get_remoteHit_skipsLoader() {
+
+        when(remote.get(REMOTE_KEY)).thenReturn(validDTO);
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            throw new AssertionError("loader must not be called");
+        })).isEqualTo(validDTO);
+    }
+
+    @Test
+    void get_loaderReturnsNull_cachedAsAbsent() {
+
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return null;
+        })).isNull();
+        // second read is answered by the negative entry
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return null;
+        })).isNull();
+
+        assertThat(loads).hasValue(1);
+        verify(remote).get(REMOTE_KEY);
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+
+    @Test
+    void invalidateAll_deletesAndPublishesOnce() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        cache.get(TEST_MESSAGE_ID, id -> validDTO);
+
+        cache.invalidateAll(List.of(TEST_MESSAGE_ID, TEST_MESSAGE_ID + 1));
+
+        String otherKey = REMOTE_KEY.replace(TEST_MESSAGE_ID.toString(), String.valueOf(TEST_MESSAGE_ID + 1));
+        verify(redis).execute(eq("EVAL"), anyString(), eq("4"), eq(REMOTE_KEY), eq(VERSION_KEY), eq(otherKey), eq(otherKey + ":version"), anyString());
+        verify(pubSub).publish(eq("papertrail:near-cache:invalidation"), endsWith("|messageContent|" + TEST_MESSAGE_ID + "," + (TEST_MESSAGE_ID + 1)));
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        });
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void put_clearsAbsentEntry() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        cache.get(TEST_MESSAGE_ID, id -> null);
+
+        cache.put(TEST_MESSAGE_ID, validDTO);
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> null)).isEqualTo(validDTO);
+    }
+
+    @Test
+    void get_loadRacesInvalidation_notCached() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+
+        // the entry is invalidated while the loader still holds the old value
+        cache.get(TEST_MESSAGE_ID, id -> {
+            cache.invalidate(TEST_MESSAGE_ID);
+            return validDTO;
+        });
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        });
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void get_loadRacesInvalidationOfAnotherKey_cached() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+
+        cache.get(TEST_MESSAGE_ID, id -> {
+            cache.invalidate(TEST_MESSAGE_ID + 1);
+            return validDTO;
+        });
+
+        // answered by the local tier, evictions of other keys don't keep a load from being cached
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> {
+            throw new AssertionError("loader must not be called");
+        })).isEqualTo(validDTO);
+    }
+
+    @Test
+    void get_redisDown_fallsThroughToLoader() {
+
+        when(remote.get(REMOTE_KEY)).thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(cache.get(TEST_MESSAGE_ID, id -> validDTO)).isEqualTo(validDTO);
+    }
+
+    @Test
+    void getAll_mixedTiers_loadsOnlyMisses() {
+
+        Long cachedId = TEST_MESSAGE_ID;
+        Long remoteId = TEST_MESSAGE_ID + 1;
+        Long loadedId = TEST_MESSAGE_ID + 2;
+        Long unknownId = TEST_MESSAGE_ID + 3;
+        MessageLogContentDTO remoteDTO = new MessageLogContentDTO(remoteId, "remote", 1L);
+        MessageLogContentDTO loadedDTO = new MessageLogContentDTO(loadedId, "loaded", 1L);
+
+        cache.get(cachedId, id -> validDTO); // fill the local tier
+        when(remote.mget(REMOTE_KEY.replace(cachedId.toString(), remoteId.toString()),
+                REMOTE_KEY.replace(cachedId.toString(), loadedId.toString()),
+                REMOTE_KEY.replace(cachedId.toString(), unknownId.toString())))
+                .thenReturn(Map.of(REMOTE_KEY.replace(cachedId.toString(), remoteId.toString()), remoteDTO));
+
+        Map<Long, MessageLogContentDTO> result = cache.getAll(List.of(cachedId, remoteId, loadedId, unknownId), ids -> {
+            assertThat(ids).containsExactly(loadedId, unknownId);
+            return Map.of(loadedId, loadedDTO);
+        });
+
+        assertThat(result).containsOnly(
+                Map.entry(cachedId, validDTO),
+                Map.entry(remoteId, remoteDTO),
+                Map.entry(loadedId, loadedDTO)
+        );
+
+        // everything is local now, including the unknown key as absent
+        assertThat(cache.getAll(Set.of(remoteId, loadedId, unknownId), ids -> {
+            throw new AssertionError("loader must not be called");
+        })).containsOnlyKeys(remoteId, loadedId);
+    }
+
+    @Test
+    void put_outsideTransaction_writesThroughAndPublishes() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+
+        cache.put(TEST_MESSAGE_ID, validDTO);
+
+        // bumps the version, so that loads running meanwhile don't fill the key
+        verify(redis).execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), anyString(), eq(REMOTE_TTL), anyString());
+        verify(pubSub).publish(eq("papertrail:near-cache:invalidation"), endsWith("|messageContent|" + TEST_MESSAGE_ID));
+    }
+
+    @Test
+    void put_maxKeyAge_capsRemoteTtl() {
+
+        when(spec.maxKeyAge()).thenReturn(Optional.of(Duration.ofDays(30)));
+        NearCache<MessageLogContentDTO> ageCapped = new NearCacheManager(redis, config, new SimpleMeterRegistry(), transactions)
+                .create("messageContent", MessageLogContentDTO.class);
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        Long dayOldId = Snowflake.lowestIdAt(Instant.now().minus(Duration.ofDays(29)));
+        String dayOldKey = REMOTE_KEY.replace(TEST_MESSAGE_ID.toString(), dayOldId.toString());
+
+        ageCapped.put(dayOldId, validDTO);
+        ageCapped.put(TEST_MESSAGE_ID, validDTO); // expired long ago
+
+        // kept only until the message expires
+        verify(redis).execute(eq("EVAL"), anyString(), eq("2"), eq(dayOldKey), eq(dayOldKey + ":version"), anyString(),
+                eq(String.valueOf(Duration.ofDays(1).toSeconds() - 1)), anyString());
+        // deleted instead of written
+        verify(redis).execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), anyString());
+        verify(redis, never()).execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), anyString(), anyString(), anyString());
+
+        AtomicInteger loads = new AtomicInteger();
+        ageCapped.get(TEST_MESSAGE_ID, id -> {
+            loads.incrementAndGet();
+            return validDTO;
+        });
+        assertThat(loads).hasValue(1); // not cached locally either
+    }
+
+    @Test
+    void invalidate_insideTransaction_deferredUntilCommit() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+
+        cache.invalidate(TEST_MESSAGE_ID);
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transactions).registerInterposedSynchronization(synchronization.capture());
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+
+        synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+
+        verify(redis).execute(eq("EVAL"), anyString(), eq("2"), eq(REMOTE_KEY), eq(VERSION_KEY), anyString());
+    }
+
+    @Test
+    void put_insideTransaction_rolledBack_notCached() {
+
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+
+        cache.put(TEST_MESSAGE_ID, validDTO);
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transactions).registerInterposedSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+
+        verifyNoInteractions(remote);
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+}
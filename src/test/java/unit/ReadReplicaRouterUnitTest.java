@@ -0,0 +1,163 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.ReadReplicaConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.repository.replica.ReadReplicaRouter;
+import io.github.eggy03.papertrail.api.repository.replica.ReplicaViewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.enterprise.inject.Instance;
+import jakarta.transaction.Status;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReadReplicaRouterUnitTest {
+
+    static final Long TEST_MESSAGE_ID = 1302148573926148096L;
+    final MessageLogContentDTO replicaDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, "replica", 1L);
+    final MessageLogContentDTO primaryDTO = new MessageLogContentDTO(TEST_MESSAGE_ID, "primary", 1L);
+
+    @Mock
+    Instance<ReplicaViewRepository> replicaInstance;
+    @Mock
+    ReplicaViewRepository replica;
+    @Mock
+    ReadReplicaConfig config;
+    @Mock
+    TransactionSynchronizationRegistry transactions;
+
+    ReadReplicaRouter router;
+
+    @BeforeEach
+    void createRouter() throws Exception {
+        when(replicaInstance.isResolvable()).thenReturn(true);
+        when(replicaInstance.get()).thenReturn(replica);
+        when(config.readYourWritesWindow()).thenReturn(Duration.ofSeconds(10));
+        lenient().when(config.maxLag()).thenReturn(Duration.ofSeconds(5));
+        lenient().when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+
+        router = new ReadReplicaRouter(replicaInstance, config, transactions, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void read_healthyReplica_readsReplica() throws Exception {
+
+        replicaLag(Duration.ofMillis(100));
+        when(replica.findMessage(TEST_MESSAGE_ID)).thenReturn(Optional.of(replicaDTO));
+
+        ReadReplicaRouter.Read<MessageLogContentDTO> read = router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO));
+
+        assertThat(read.value()).contains(replicaDTO);
+        assertThat(read.fromReplica()).isTrue();
+        assertThat(router.staleFor(read)).isEqualTo(Duration.ofSeconds(5)); // cached locally for at most the max lag
+    }
+
+    @Test
+    void staleFor_onlyPrimaryReads_current() {
+
+        ReadReplicaRouter.Read<MessageLogContentDTO> primaryRead = new ReadReplicaRouter.Read<>(Optional.of(primaryDTO), false);
+        ReadReplicaRouter.Read<MessageLogContentDTO> replicaRead = new ReadReplicaRouter.Read<>(Optional.of(replicaDTO), true);
+
+        assertThat(router.staleFor(primaryRead, primaryRead)).isNull();
+        assertThat(router.staleFor(primaryRead, replicaRead)).isEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void read_beforeFirstLagCheck_readsPrimary() throws Exception {
+
+        assertThat(router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)).value())
+                .contains(primaryDTO);
+        verify(replica, never()).findMessage(TEST_MESSAGE_ID);
+    }
+
+    @Test
+    void read_replicaTooFarBehind_readsPrimary() throws Exception {
+
+        replicaLag(Duration.ofMinutes(1));
+
+        assertThat(router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)).value())
+                .contains(primaryDTO);
+        verify(replica, never()).findMessage(TEST_MESSAGE_ID);
+    }
+
+    @Test
+    void read_afterWrite_readsPrimary() throws Exception {
+
+        replicaLag(Duration.ZERO);
+        router.recordWrite(TEST_MESSAGE_ID);
+
+        assertThat(router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)).value())
+                .contains(primaryDTO);
+        verify(replica, never()).findMessage(TEST_MESSAGE_ID);
+    }
+
+    @Test
+    void read_insideTransaction_readsPrimary() throws Exception {
+
+        replicaLag(Duration.ZERO);
+        when(transactions.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+
+        assertThat(router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)).value())
+                .contains(primaryDTO);
+        verify(replica, never()).findMessage(TEST_MESSAGE_ID);
+    }
+
+    @Test
+    void read_missingOnReplica_readsPrimary() throws Exception {
+
+        replicaLag(Duration.ZERO);
+        when(replica.findMessage(TEST_MESSAGE_ID)).thenReturn(Optional.empty());
+
+        assertThat(router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)).value())
+                .contains(primaryDTO);
+    }
+
+    @Test
+    void read_replicaFails_fallsBackAndStopsUsingReplica() throws Exception {
+
+        replicaLag(Duration.ZERO);
+        when(config.fallbackOnFailure()).thenReturn(true);
+        when(replica.findMessage(TEST_MESSAGE_ID)).thenThrow(new SQLException("connection refused"));
+
+        assertThat(router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)).value())
+                .contains(primaryDTO);
+        // until the next lag check, reads skip the replica
+        assertThat(router.read(TEST_MESSAGE_ID + 1, r -> r.findMessage(TEST_MESSAGE_ID + 1), Optional::empty).value()).isEmpty();
+        verify(replica, never()).findMessage(TEST_MESSAGE_ID + 1);
+    }
+
+    @Test
+    void read_replicaFails_noFallback_throws() throws Exception {
+
+        replicaLag(Duration.ZERO);
+        when(config.fallbackOnFailure()).thenReturn(false);
+        when(replica.findMessage(TEST_MESSAGE_ID)).thenThrow(new SQLException("connection refused"));
+
+        assertThatThrownBy(() -> router.read(TEST_MESSAGE_ID, r -> r.findMessage(TEST_MESSAGE_ID), () -> Optional.of(primaryDTO)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    // runs the scheduled lag check, which is package-private
+    private void replicaLag(Duration lag) throws Exception {
+        when(replica.findReplicationLag()).thenReturn(lag);
+        Method checkLag = ReadReplicaRouter.class.getDeclaredMethod("checkLag");
+        checkLag.setAccessible(true);
+        checkLag.invoke(router);
+    }
+}
@@ -0,0 +1,220 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.MessageLocksConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.exceptions.LockClusterJoinException;
+import io.github.eggy03.papertrail.api.service.MessageLogContentService;
+import io.github.eggy03.papertrail.api.service.locks.LockClusterMembership;
+import io.github.eggy03.papertrail.api.service.locks.LockMetrics;
+import io.github.eggy03.papertrail.api.service.locks.MessageSaveAwaiter;
+import io.github.eggy03.papertrail.api.service.locks.StripedLockMessageContentOperationImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StripedLockMessageContentOperationUnitTest {
+
+    static final Duration JOIN_TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    RedissonClient redissonClient;
+    @Mock
+    LockClusterMembership membership;
+    @Mock
+    MessageLogContentService delegate;
+    @Mock
+    MessageSaveAwaiter saveAwaiter;
+    @Mock
+    MessageLocksConfig config;
+    @Mock
+    MessageLocksConfig.Striped striped;
+    @Mock
+    LockMetrics lockMetrics;
+    @Mock
+    RLock rlock;
+
+    final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    final CountDownLatch blockedSaveEntered = new CountDownLatch(1);
+    StripedLockMessageContentOperationImpl operation;
+
+    @BeforeEach
+    void createOperation() {
+        when(config.striped()).thenReturn(striped);
+        when(striped.stripes()).thenReturn(3); // rounded up to 4, so messageIDs 1 and 5 share a stripe
+        operation = new StripedLockMessageContentOperationImpl(redissonClient, membership, delegate, saveAwaiter, config, lockMetrics);
+    }
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void saveMessage_sameStripe_runsOneAfterTheOther() throws Exception {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.NEVER);
+        CountDownLatch release = blockSavesOf(1L);
+
+        Future<?> first = executor.submit(() -> operation.saveMessage(dto(1L)));
+        assertThat(blockedSaveEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<?> second = executor.submit(() -> operation.saveMessage(dto(5L)));
+
+        assertThatThrownBy(() -> second.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void saveMessage_differentStripes_runConcurrently() throws Exception {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.NEVER);
+        CountDownLatch release = blockSavesOf(1L);
+
+        Future<?> first = executor.submit(() -> operation.saveMessage(dto(1L)));
+        assertThat(blockedSaveEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<?> second = executor.submit(() -> operation.saveMessage(dto(2L)));
+
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(first).isNotDone();
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void saveMessage_alwaysDistributed_takesRedisLock() {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.ALWAYS);
+        givenNonFairLock();
+
+        operation.saveMessage(dto(1L));
+
+        verify(rlock).lock();
+        verify(delegate).saveMessage(dto(1L));
+        verify(rlock).unlock();
+        verifyNoInteractions(membership);
+    }
+
+    @Test
+    void saveMessage_autoAndOnlyNode_skipsRedisLock() {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.AUTO);
+        when(striped.joinTimeout()).thenReturn(JOIN_TIMEOUT);
+        when(membership.awaitSeenByAllNodes(JOIN_TIMEOUT)).thenReturn(true);
+        when(membership.isClustered()).thenReturn(false);
+
+        operation.saveMessage(dto(1L));
+
+        verify(delegate).saveMessage(dto(1L));
+        verifyNoInteractions(redissonClient);
+    }
+
+    @Test
+    void saveMessage_autoAndClustered_takesRedisLock() {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.AUTO);
+        when(striped.joinTimeout()).thenReturn(JOIN_TIMEOUT);
+        when(membership.awaitSeenByAllNodes(JOIN_TIMEOUT)).thenReturn(true);
+        when(membership.isClustered()).thenReturn(true);
+        givenNonFairLock();
+
+        operation.saveMessage(dto(1L));
+
+        verify(rlock).lock();
+        verify(delegate).saveMessage(dto(1L));
+        verify(rlock).unlock();
+    }
+
+    @Test
+    void saveMessage_autoAndNotJoinedInTime_rejected() {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.AUTO);
+        when(striped.joinTimeout()).thenReturn(JOIN_TIMEOUT);
+        when(membership.awaitSeenByAllNodes(JOIN_TIMEOUT)).thenReturn(false);
+
+        assertThatThrownBy(() -> operation.saveMessage(dto(1L))).isInstanceOf(LockClusterJoinException.class);
+
+        verifyNoInteractions(delegate, redissonClient);
+    }
+
+    @Test
+    void saveMessage_redisLockFails_reportsFailureAndReleasesStripe() throws Exception {
+
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.ALWAYS);
+        givenNonFairLock();
+        doThrow(new IllegalStateException("Redis is unreachable")).doNothing().when(rlock).lock();
+
+        assertThatThrownBy(() -> operation.saveMessage(dto(1L))).isInstanceOf(IllegalStateException.class);
+        verify(lockMetrics).failed(1L);
+
+        // another thread, since the stripe is reentrant
+        executor.submit(() -> operation.saveMessage(dto(1L))).get(5, TimeUnit.SECONDS);
+        verify(delegate).saveMessage(dto(1L));
+    }
+
+    @Test
+    void saveMessages_redisLockFails_reportsFailure() {
+
+        RLock multiLock = mock(RLock.class);
+        when(striped.distributed()).thenReturn(MessageLocksConfig.DistributedMode.ALWAYS);
+        givenNonFairLock();
+        when(redissonClient.getMultiLock(any(RLock[].class))).thenReturn(multiLock);
+        doThrow(new IllegalStateException("Redis is unreachable")).when(multiLock).lock();
+
+        assertThatThrownBy(() -> operation.saveMessages(List.of(dto(1L), dto(2L)))).isInstanceOf(IllegalStateException.class);
+
+        verify(lockMetrics).failed(null);
+        verifyNoInteractions(delegate);
+    }
+
+    private void givenNonFairLock() {
+        when(striped.distributedLockType()).thenReturn(MessageLocksConfig.DistributedLockType.NON_FAIR);
+        when(striped.leaseTime()).thenReturn(Optional.empty());
+        when(redissonClient.getLock(any(String.class))).thenReturn(rlock);
+    }
+
+    // saves of the given messageID signal blockedSaveEntered and block until the returned latch is released
+    private CountDownLatch blockSavesOf(long messageId) {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.saveMessage(any())).thenAnswer(invocation -> {
+            MessageLogContentDTO dto = invocation.getArgument(0);
+            if (dto.getMessageId() == messageId) {
+                blockedSaveEntered.countDown();
+                release.await();
+            }
+            return dto;
+        });
+        return release;
+    }
+
+    private static MessageLogContentDTO dto(long messageId) {
+        return new MessageLogContentDTO(messageId, "content", 1L);
+    }
+}
@@ -0,0 +1,167 @@
+package unit;
+
+import io.github.eggy03.papertrail.api.configuration.UpdateCoalescingConfig;
+import io.github.eggy03.papertrail.api.dto.MessageLogContentDTO;
+import io.github.eggy03.papertrail.api.exceptions.MessageNotFoundException;
+import io.github.eggy03.papertrail.api.service.coalescing.UpdateCoalescingDecorator;
+import io.github.eggy03.papertrail.api.service.locks.MessageLogContentOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UpdateCoalescingDecoratorUnitTest {
+
+    static final Long TEST_MESSAGE_ID = 1302148573926148096L;
+    static final Long TEST_AUTHOR_ID = 1302148573926148097L;
+
+    @Mock
+    MessageLogContentOperation delegate;
+    @Mock
+    UpdateCoalescingConfig config;
+
+    SimpleMeterRegistry registry;
+    UpdateCoalescingDecorator decorator;
+
+    @BeforeEach
+    void createDecorator() {
+        lenient().when(config.enabled()).thenReturn(true);
+        lenient().when(config.window()).thenReturn(Duration.ofMillis(500));
+
+        registry = new SimpleMeterRegistry();
+        decorator = new UpdateCoalescingDecorator(delegate, config, registry);
+    }
+
+    @Test
+    void updateMessage_burst_writesLatestOnce() throws Exception {
+
+        List<MessageLogContentDTO> edits = List.of(
+                new MessageLogContentDTO(TEST_MESSAGE_ID, "edit 1", TEST_AUTHOR_ID),
+                new MessageLogContentDTO(TEST_MESSAGE_ID, "edit 2", TEST_AUTHOR_ID),
+                new MessageLogContentDTO(TEST_MESSAGE_ID, "edit 3", TEST_AUTHOR_ID)
+        );
+        when(delegate.updateMessage(TEST_MESSAGE_ID, edits.getLast())).thenReturn(edits.getLast());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // the edits arrive in order, well within the window of the first one
+            Future<MessageLogContentDTO> first = executor.submit(() -> decorator.updateMessage(TEST_MESSAGE_ID, edits.get(0)));
+            Thread.sleep(50);
+            Future<MessageLogContentDTO> second = executor.submit(() -> decorator.updateMessage(TEST_MESSAGE_ID, edits.get(1)));
+            Thread.sleep(50);
+            Future<MessageLogContentDTO> third = executor.submit(() -> decorator.updateMessage(TEST_MESSAGE_ID, edits.get(2)));
+
+            assertThat(first.get()).isEqualTo(edits.getLast());
+            assertThat(second.get()).isEqualTo(edits.getLast());
+            assertThat(third.get()).isEqualTo(edits.getLast());
+        }
+
+        verify(delegate, times(1)).updateMessage(eq(TEST_MESSAGE_ID), any());
+        assertThat(registry.get("papertrail.update.coalescing.requests").counter().count()).isEqualTo(3);
+        assertThat(registry.get("papertrail.update.coalescing.writes").counter().count()).isEqualTo(1);
+        assertThat(registry.get("papertrail.update.coalescing.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void updateMessage_writeFails_everyCallerThrows() throws Exception {
+
+        MessageLogContentDTO edit = new MessageLogContentDTO(TEST_MESSAGE_ID, "edit", TEST_AUTHOR_ID);
+        when(delegate.updateMessage(TEST_MESSAGE_ID, edit)).thenThrow(new MessageNotFoundException("Message with ID " + TEST_MESSAGE_ID + " not found"));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<MessageLogContentDTO> first = executor.submit(() -> decorator.updateMessage(TEST_MESSAGE_ID, edit));
+            Thread.sleep(50);
+            Future<MessageLogContentDTO> second = executor.submit(() -> decorator.updateMessage(TEST_MESSAGE_ID, edit));
+
+            assertThatThrownBy(first::get).hasCauseInstanceOf(MessageNotFoundException.class);
+            assertThatThrownBy(second::get).hasCauseInstanceOf(MessageNotFoundException.class);
+        }
+
+        verify(delegate, times(1)).updateMessage(TEST_MESSAGE_ID, edit);
+    }
+
+    @Test
+    void upsertMessage_duringWindow_writesOpenBatchFirst() throws Exception {
+
+        MessageLogContentDTO edit = new MessageLogContentDTO(TEST_MESSAGE_ID, "edit", TEST_AUTHOR_ID);
+        MessageLogContentDTO upsert = new MessageLogContentDTO(TEST_MESSAGE_ID, "upsert", TEST_AUTHOR_ID);
+        when(delegate.updateMessage(TEST_MESSAGE_ID, edit)).thenReturn(edit);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<MessageLogContentDTO> update = executor.submit(() -> decorator.updateMessage(TEST_MESSAGE_ID, edit));
+            Thread.sleep(50);
+
+            long start = System.nanoTime();
+            decorator.upsertMessage(upsert);
+
+            // the upsert cut the window short, instead of waiting it out or overtaking the update
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(400));
+            assertThat(update.get()).isEqualTo(edit);
+        }
+
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).updateMessage(TEST_MESSAGE_ID, edit);
+        order.verify(delegate).upsertMessage(upsert);
+    }
+
+    @Test
+    void updateMessage_interruptedDuringWindow_writesWithoutTheFlagAndRestoresIt() {
+
+        MessageLogContentDTO edit = new MessageLogContentDTO(TEST_MESSAGE_ID, "edit", TEST_AUTHOR_ID);
+        when(delegate.updateMessage(TEST_MESSAGE_ID, edit)).thenAnswer(invocation -> {
+            assertThat(Thread.currentThread().isInterrupted()).isFalse(); // no I/O on an interrupted thread
+            return edit;
+        });
+
+        Thread.currentThread().interrupt(); // ends the window right away
+        try {
+            assertThat(decorator.updateMessage(TEST_MESSAGE_ID, edit)).isEqualTo(edit);
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted(); // don't leak the flag into other tests
+        }
+    }
+
+    @Test
+    void updateMessage_afterWindow_writesAgain() {
+
+        when(config.window()).thenReturn(Duration.ZERO);
+        MessageLogContentDTO edit = new MessageLogContentDTO(TEST_MESSAGE_ID, "edit", TEST_AUTHOR_ID);
+        when(delegate.updateMessage(TEST_MESSAGE_ID, edit)).thenReturn(edit);
+
+        decorator.updateMessage(TEST_MESSAGE_ID, edit);
+        decorator.updateMessage(TEST_MESSAGE_ID, edit);
+
+        verify(delegate, times(2)).updateMessage(TEST_MESSAGE_ID, edit);
+    }
+
+    @Test
+    void updateMessage_disabled_passesThrough() {
+
+        when(config.enabled()).thenReturn(false);
+        MessageLogContentDTO edit = new MessageLogContentDTO(TEST_MESSAGE_ID, "edit", TEST_AUTHOR_ID);
+        when(delegate.updateMessage(TEST_MESSAGE_ID, edit)).thenReturn(edit);
+
+        assertThat(decorator.updateMessage(TEST_MESSAGE_ID, edit)).isEqualTo(edit);
+        assertThat(registry.get("papertrail.update.coalescing.requests").counter().count()).isZero();
+    }
+}